@@ -0,0 +1,248 @@
+package rmi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/** Compares the handoff throughput of <code>RingBuffer</code> with that of
+    the queues of the JDK.
+
+    <p>
+    Each trial has producer threads offer a fixed number of items, which
+    consumer threads take, and reports the number of items handed over per
+    microsecond. Trials are repeated for warm-up before being measured. Run
+    with <code>make bench</code>, optionally giving the numbers of producers
+    and consumers as arguments.
+ */
+public class RingBufferBenchmark
+{
+    private static final int    CAPACITY = 1024;
+    private static final int    ITEMS = 1_000_000;
+    private static final int    WARMUP_TRIALS = 3;
+    private static final int    TRIALS = 5;
+
+    /** Runs the benchmark.
+
+        @param arguments The number of producers and of consumers, both 2 by
+                         default.
+     */
+    public static void main(String[] arguments) throws InterruptedException
+    {
+        int                     producers =
+            arguments.length > 0 ? Integer.parseInt(arguments[0]) : 2;
+        int                     consumers =
+            arguments.length > 1 ? Integer.parseInt(arguments[1]) : 2;
+
+        System.out.println(producers + " producers, " + consumers +
+                           " consumers, " + ITEMS + " items");
+        for(WaitStrategy strategy : WaitStrategy.values())
+        {
+            measure("RingBuffer " + strategy, producers, consumers,
+                    () -> new RingBufferQueue(CAPACITY, strategy));
+        }
+        measure("ArrayBlockingQueue", producers, consumers,
+                () -> new BlockingQueueHandoff(
+                    new ArrayBlockingQueue<>(CAPACITY)));
+        measure("LinkedBlockingQueue", producers, consumers,
+                () -> new BlockingQueueHandoff(
+                    new LinkedBlockingQueue<>(CAPACITY)));
+        measure("ConcurrentLinkedQueue", producers, consumers,
+                () -> new PollingHandoff(new ConcurrentLinkedQueue<>()));
+    }
+
+    /** Runs the warm-up and measured trials for one kind of handoff and
+        prints the mean throughput. */
+    private static void measure(String name, int producers, int consumers,
+                                Supplier<Handoff> factory)
+        throws InterruptedException
+    {
+        for(int i = 0; i < WARMUP_TRIALS; i++)
+            trial(factory.get(), producers, consumers);
+
+        long                    nanos = 0;
+        for(int i = 0; i < TRIALS; i++)
+            nanos += trial(factory.get(), producers, consumers);
+
+        double                  perMicro =
+            (double)ITEMS * TRIALS / (nanos / 1000.0);
+        System.out.printf("%-28s %8.2f items/us%n", name, perMicro);
+    }
+
+    /** Hands <code>ITEMS</code> items from the producers to the consumers
+        and returns the time taken, in nanoseconds. */
+    private static long trial(Handoff handoff, int producers, int consumers)
+        throws InterruptedException
+    {
+        List<Thread>            senders = new ArrayList<>();
+        List<Thread>            receivers = new ArrayList<>();
+        Integer                 item = 1;
+
+        for(int p = 0; p < producers; p++)
+        {
+            int                 share = ITEMS / producers +
+                (p < ITEMS % producers ? 1 : 0);
+            senders.add(new Thread(() -> {
+                for(int i = 0; i < share; i++)
+                    handoff.put(item);
+            }));
+        }
+        for(int c = 0; c < consumers; c++)
+        {
+            receivers.add(new Thread(() -> {
+                while(handoff.take() != null)
+                    ;
+            }));
+        }
+
+        long                    start = System.nanoTime();
+        for(Thread thread : receivers)
+            thread.start();
+        for(Thread thread : senders)
+            thread.start();
+        for(Thread thread : senders)
+            thread.join();
+        handoff.close(consumers);
+        for(Thread thread : receivers)
+            thread.join();
+        return System.nanoTime() - start;
+    }
+
+    /** Handoff under measurement. */
+    private interface Handoff
+    {
+        /** Offers an item, waiting for room if necessary. */
+        void put(Integer item);
+        /** Takes an item, waiting if necessary. Returns <code>null</code> once
+            the handoff is closed. */
+        Integer take();
+        /** Stops the given number of consumers once the items are taken. */
+        void close(int consumers);
+    }
+
+    private static class RingBufferQueue implements Handoff
+    {
+        private final RingBuffer<Integer>   buffer;
+
+        RingBufferQueue(int capacity, WaitStrategy strategy)
+        {
+            buffer = new RingBuffer<>(capacity, strategy);
+        }
+
+        @Override
+        public void put(Integer item)
+        {
+            // Full: let the consumers run.
+            while(!buffer.offer(item))
+                Thread.yield();
+        }
+
+        @Override
+        public Integer take()
+        {
+            try
+            {
+                return buffer.take();
+            }
+            catch(InterruptedException e)
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public void close(int consumers)
+        {
+            buffer.close();
+        }
+    }
+
+    /** Blocking queue handoff, stopped by one end marker per consumer. */
+    private static class BlockingQueueHandoff implements Handoff
+    {
+        private static final Integer        END = Integer.valueOf(-1);
+        private final BlockingQueue<Integer>   queue;
+
+        BlockingQueueHandoff(BlockingQueue<Integer> queue)
+        {
+            this.queue = queue;
+        }
+
+        @Override
+        public void put(Integer item)
+        {
+            try
+            {
+                queue.put(item);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public Integer take()
+        {
+            try
+            {
+                Integer         item = queue.take();
+                return item == END ? null : item;
+            }
+            catch(InterruptedException e)
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public void close(int consumers)
+        {
+            for(int i = 0; i < consumers; i++)
+                put(END);
+        }
+    }
+
+    /** Unbounded non-blocking queue handoff, polled by spinning
+        consumers. */
+    private static class PollingHandoff implements Handoff
+    {
+        private final Queue<Integer>        queue;
+        private volatile boolean            closed = false;
+
+        PollingHandoff(Queue<Integer> queue)
+        {
+            this.queue = queue;
+        }
+
+        @Override
+        public void put(Integer item)
+        {
+            queue.offer(item);
+        }
+
+        @Override
+        public Integer take()
+        {
+            while(true)
+            {
+                Integer         item = queue.poll();
+                if(item != null)
+                    return item;
+                if(closed && queue.isEmpty())
+                    return null;
+                Thread.onSpinWait();
+            }
+        }
+
+        @Override
+        public void close(int consumers)
+        {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package rmi;
+
+/** Concurrency limit adjusted to the latency of the invocations it admits.
+
+ <p>
+ The limit follows the gradient between a long-term and a short-term average
+ of the invocation latency. While the short-term latency is not much above
+ the long-term one, the limit grows by about the square root of itself on
+ every sample, probing for more capacity. When the short-term latency rises
+ because invocations have started to queue for some resource, the gradient
+ shrinks the limit in proportion, down to half of it per sample. Samples
+ taken while fewer than half of the allowed invocations were running say
+ nothing about the capacity and leave the limit unchanged.
+
+ <p>
+ The long-term average decays quickly when it is far above the short-term
+ one, so that the limit recovers promptly after a period of high latency.
+ */
+class AdaptiveLimit
+{
+    /** Ratio by which the short-term latency may exceed the long-term one
+     before the limit shrinks. */
+    static final double TOLERANCE = 1.5;
+    /** Weight of each new limit computed in the limit used. */
+    static final double SMOOTHING = 0.2;
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private double shortLatency = 0;
+    private double longLatency = 0;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit)
+    {
+        if (minLimit <= 0) throw new IllegalArgumentException("minLimit <= 0");
+        if (maxLimit < minLimit) throw new IllegalArgumentException("maxLimit < minLimit");
+        if (initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("initialLimit out of range");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /** Returns the current limit. */
+    int limit()
+    {
+        return (int) limit;
+    }
+
+    /** Records an invocation which took <code>latencyNanos</code> while
+     <code>inFlight</code> invocations were running, and returns the new
+     limit. */
+    int update(long latencyNanos, int inFlight)
+    {
+        if (shortLatency == 0)
+        {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+        }
+        shortLatency += SHORT_ALPHA * (latencyNanos - shortLatency);
+        longLatency += LONG_ALPHA * (latencyNanos - longLatency);
+        if (longLatency > 2 * shortLatency) longLatency *= 0.95;
+
+        if (inFlight < limit / 2) return (int) limit;
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = limit * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+        return (int) limit;
+    }
+}
@@ -0,0 +1,42 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/** Identifies a call received by a skeleton by its method and encoded
+ argument bytes, without decoding the arguments. */
+final class ArgumentKey
+{
+    final Method method;
+    final byte[] arguments;
+    private final int hash;
+
+    ArgumentKey(Method method, byte[] arguments)
+    {
+        this.method = method;
+        this.arguments = arguments;
+        this.hash = 31 * method.hashCode() + Arrays.hashCode(arguments);
+    }
+
+    /** Returns the number of argument bytes. */
+    int weight()
+    {
+        return arguments == null ? 0 : arguments.length;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) return true;
+        if (!(obj instanceof ArgumentKey)) return false;
+        ArgumentKey other = (ArgumentKey) obj;
+        return hash == other.hash && method.equals(other.method)
+            && Arrays.equals(arguments, other.arguments);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+}
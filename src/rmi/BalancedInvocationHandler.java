@@ -0,0 +1,207 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/** Invocation handler for stubs spreading their calls over equivalent
+ skeletons.
+
+ <p>
+ Each call is sent to the endpoint chosen by the <code>LoadBalancer</code>.
+ Successful calls update the endpoint's latency estimate and load hint;
+ transport failures count towards ejecting it. A call whose connection is
+ refused has not been sent, so it is retried once on another endpoint.
+
+ <p>
+ Calls to <code>@Idempotent</code> methods are hedged as decided by the
+ <code>HedgePolicy</code>: if the chosen skeleton has not answered within the
+ hedging delay, a second copy is sent to another skeleton from a background
+ thread, in the call context of the caller. The first response is used and
+ the other copy is cancelled.
+ */
+class BalancedInvocationHandler<T> extends RemoteInvocationHandler<T>
+{
+    private static final ExecutorService hedgeExecutor =
+        Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    final LoadBalancer balancer;
+    final HedgePolicy hedging;
+
+    BalancedInvocationHandler(Class<T> c, LoadBalancer balancer, HedgePolicy hedging)
+    {
+        super(c);
+        this.balancer = balancer;
+        this.hedging = hedging;
+    }
+
+    @Override
+    InetSocketAddress endpoint(Method m, Object[] args)
+    {
+        // The skeletons are equivalent, so results and coalesced calls are
+        // shared with other stubs under the first address of the set.
+        return balancer.endpoints()[0].address;
+    }
+
+    @Override
+    Object call(Method m, Object[] args) throws Throwable
+    {
+        if (m.isAnnotationPresent(Idempotent.class) && balancer.endpoints().length > 1)
+        {
+            hedging.deposit();
+            long delay = hedging.delay();
+            if (delay >= 0) return hedged(m, args, delay);
+        }
+        Endpoint endpoint = balancer.choose();
+        try
+        {
+            return unpack(exchange(endpoint, m, args));
+        }
+        catch (RMIException e)
+        {
+            if (!isConnectFailure(e)) throw e;
+            Endpoint other = balancer.choose(endpoint);
+            if (other == endpoint) throw e;
+            return unpack(exchange(other, m, args));
+        }
+    }
+
+    /** Sends a call to one endpoint and, if it is not answered within
+     <code>delay</code> nanoseconds and the budget allows, a second copy to
+     another endpoint. */
+    private Object hedged(Method m, Object[] args, long delay) throws Throwable
+    {
+        Endpoint primary = balancer.choose();
+        HedgedCall call = new HedgedCall(CallContext.deadlineFor(m));
+        CallContext context = CallContext.current();
+        TimingWheel.Timeout timer = TimingWheel.shared().schedule(() -> {
+            Endpoint secondary = balancer.choose(primary);
+            if (secondary == primary || !call.startSecondary()) return;
+            if (!hedging.tryHedge())
+            {
+                call.secondaryRefused();
+                return;
+            }
+            // The secondary copy is sent in the caller's context, so that it
+            // keeps the caller's lane and client identifier.
+            hedgeExecutor.execute(() -> {
+                CallContext previous = CallContext.swap(context);
+                try
+                {
+                    call.secondarySucceeded(exchange(secondary, m, args, call.secondary));
+                }
+                catch (RMIException e)
+                {
+                    call.secondaryFailed();
+                }
+                finally
+                {
+                    CallContext.swap(previous);
+                }
+            });
+        }, delay, TimeUnit.NANOSECONDS);
+        try
+        {
+            call.primarySucceeded(exchange(primary, m, args, call.primary));
+        }
+        catch (RMIException e)
+        {
+            call.primaryFailed(e);
+        }
+        finally
+        {
+            timer.cancel();
+        }
+        Return ret;
+        try
+        {
+            ret = call.await();
+        }
+        catch (RMIException e)
+        {
+            if (!isConnectFailure(e)) throw e;
+            Endpoint other = balancer.choose(primary);
+            if (other == primary) throw e;
+            ret = exchange(other, m, args);
+        }
+        return unpack(ret);
+    }
+
+    /** Sends a call to an endpoint, recording its outcome. */
+    Return exchange(Endpoint endpoint, Method m, Object[] args) throws RMIException
+    {
+        return exchange(endpoint, m, args, pendingCall(CallContext.deadlineFor(m)));
+    }
+
+    /** Sends a cancellable call to an endpoint, recording its outcome. A
+     cancelled call does not count as a failure of the endpoint. */
+    Return exchange(Endpoint endpoint, Method m, Object[] args, PendingCall pending)
+        throws RMIException
+    {
+        endpoint.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        try
+        {
+            Return ret = exchange(endpoint.address, m, args, pending);
+            long latency = System.nanoTime() - start;
+            endpoint.succeeded(latency, ret.load);
+            hedging.record(latency);
+            return ret;
+        }
+        catch (RMIException e)
+        {
+            if (!pending.isCancelled() || pending.isExpired())
+                endpoint.failed(System.currentTimeMillis());
+            throw e;
+        }
+        finally
+        {
+            endpoint.inFlight.decrementAndGet();
+        }
+    }
+
+    private InetSocketAddress[] addresses()
+    {
+        Endpoint[] endpoints = balancer.endpoints();
+        InetSocketAddress[] addresses = new InetSocketAddress[endpoints.length];
+        for (int i = 0 ; i < endpoints.length ; i++) addresses[i] = endpoints[i].address;
+        return addresses;
+    }
+
+    @Override
+    public String toString()
+    {
+        return c.getName() + " @ " + Arrays.toString(balancer.endpoints());
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == null) return false;
+        try
+        {
+            Object handler = ROR.getInvocationHandler(obj);
+            if (handler == null || handler.getClass() != getClass()) return false;
+            BalancedInvocationHandler other = (BalancedInvocationHandler) handler;
+            return c == other.c
+                && Arrays.equals(addresses(), other.addresses());
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return toString().hashCode();
+    }
+}
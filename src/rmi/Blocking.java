@@ -0,0 +1,54 @@
+package rmi;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/** Waits which let a fork-join pool running them compensate.
+
+ <p>
+ Calls run on a skeleton's CPU pool may still have to wait for admission, for
+ the server lock, or for an actor or partition thread. Such waits go through
+ <code>await</code>, which declares them to the pool with
+ <code>ForkJoinPool.managedBlock</code> so that the pool can start a spare
+ thread instead of running short of threads. On other threads the wait is
+ simply performed.
+ */
+final class Blocking
+{
+    /** A wait, returning once the awaited condition holds. */
+    interface Wait
+    {
+        void await() throws InterruptedException;
+    }
+
+    private Blocking() { }
+
+    /** Performs a wait, declaring it to the fork-join pool of the current
+     thread, if any. */
+    static void await(Wait wait) throws InterruptedException
+    {
+        if (!(Thread.currentThread() instanceof ForkJoinWorkerThread))
+        {
+            wait.await();
+            return;
+        }
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+        {
+            private boolean done = false;
+
+            @Override
+            public boolean block() throws InterruptedException
+            {
+                wait.await();
+                done = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable()
+            {
+                return done;
+            }
+        });
+    }
+}
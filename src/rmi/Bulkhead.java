@@ -0,0 +1,36 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Places a remote interface method in a bulkhead.
+
+ <p>
+ The skeleton runs at most <code>maxConcurrent</code> invocations of the
+ methods in a bulkhead at once, lets at most <code>maxQueued</code> further
+ calls wait for one of them to finish, and refuses the calls beyond that at
+ once with a <code>RejectedCallException</code>. A slow method can thereby
+ only hold up the calls of its own bulkhead.
+
+ <p>
+ Methods naming the same bulkhead share it, with the limits of the first
+ method declaring it. Methods without a name have a bulkhead of their own,
+ named after the method. Only the annotated method is placed in the
+ bulkhead, not its overloads. Limits can be changed, and further methods
+ assigned, on the skeleton; see <code>Skeleton.setBulkhead</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Bulkhead
+{
+    /** Name of the bulkhead, or the empty string to use the method name. */
+    String value() default "";
+
+    /** Maximum number of invocations running at once. */
+    int maxConcurrent();
+
+    /** Maximum number of calls waiting to run. */
+    int maxQueued() default 0;
+}
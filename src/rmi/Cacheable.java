@@ -0,0 +1,23 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks a remote interface method whose results may be cached by stubs.
+
+ <p>
+ The method must be a pure lookup: two calls with equal arguments must return
+ equal results for at least <code>ttl</code> milliseconds. Stubs keep results
+ in the <code>ResultCache</code> shared by all stubs for the same skeleton
+ address, keyed by the method and the argument values. Exceptions are never
+ cached. Cached results are shared between callers and must not be modified.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cacheable
+{
+    /** Time, in milliseconds, for which a result may be reused. */
+    long ttl();
+}
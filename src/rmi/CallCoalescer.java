@@ -0,0 +1,143 @@
+package rmi;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Coalesces concurrent identical calls to <code>@Idempotent</code> methods.
+
+ <p>
+ The first call for a given method and argument values is sent to the
+ skeleton. Calls made with the same method and equal arguments while it is in
+ flight are attached to it and receive its result, or its exception, without
+ opening connections of their own. Once the call completes, the next
+ identical call is sent again.
+
+ <p>
+ Each attached call receives its own copy of the result, or of the
+ exception, made by serializing it, so that a caller modifying a returned
+ collection, or a thrown exception, does not affect the others.
+
+ <p>
+ Each call keeps its own deadline. An attached call waits no longer than its
+ deadline allows, and fails with a <code>DeadlineExceededException</code> of
+ its own when it passes. If the call in flight fails because its own deadline
+ passed, or because the future it was made for was cancelled, the calls
+ attached to it are not failed with it: one of them is sent in its place.
+
+ <p>
+ One coalescer is shared by all stubs that call the skeleton at a given
+ address.
+ */
+public class CallCoalescer
+{
+    private static final ConcurrentHashMap<InetSocketAddress, CallCoalescer> coalescers =
+        new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<CallKey, CompletableFuture<Object>> inFlight =
+        new ConcurrentHashMap<>();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /** Outcome given to attached calls when the call in flight failed on its
+     own deadline or was cancelled, telling them to try again. */
+    private static final Object ABANDONED = new Object();
+
+    /** Returns the coalescer shared by all stubs for the given skeleton
+     address. */
+    public static CallCoalescer forEndpoint(InetSocketAddress address)
+    {
+        if (address == null) throw new NullPointerException("address == null");
+        return coalescers.computeIfAbsent(address, a -> new CallCoalescer());
+    }
+
+    /** Returns the number of calls that were sent to the skeleton. */
+    public long sent()
+    {
+        return sent.sum();
+    }
+
+    /** Returns the number of calls that were attached to an identical call
+     already in flight. */
+    public long coalesced()
+    {
+        return coalesced.sum();
+    }
+
+    /** Returns the number of distinct calls currently in flight. */
+    public int inFlight()
+    {
+        return inFlight.size();
+    }
+
+    /** Performs a call, or waits for an identical call already in flight. */
+    Object call(CallKey key, RemoteCall call) throws Throwable
+    {
+        long deadline = CallContext.deadlineFor(key.method);
+        while (true)
+        {
+            CompletableFuture<Object> pending = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, pending);
+            if (existing == null) return lead(key, call, pending);
+            coalesced.increment();
+            Object result = await(existing, deadline);
+            if (result != ABANDONED) return Marshal.copy(result);
+        }
+    }
+
+    /** Sends a call on behalf of all the calls attached to
+     <code>pending</code>. */
+    private Object lead(CallKey key, RemoteCall call, CompletableFuture<Object> pending)
+        throws Throwable
+    {
+        sent.increment();
+        try
+        {
+            Object result = call.perform();
+            inFlight.remove(key, pending);
+            pending.complete(result);
+            return result;
+        }
+        catch (Throwable t)
+        {
+            inFlight.remove(key, pending);
+            boolean abandoned = t instanceof DeadlineExceededException
+                || RemoteInvocationHandler.asyncCallCancelled();
+            if (abandoned) pending.complete(ABANDONED);
+            else pending.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    /** Waits for the outcome of a call in flight until the given deadline,
+     and returns its result or throws a copy of its exception. */
+    private static Object await(CompletableFuture<Object> pending, long deadline)
+        throws Throwable
+    {
+        try
+        {
+            if (deadline == CallContext.NO_DEADLINE) return pending.get();
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                throw new DeadlineExceededException("deadline passed before call");
+            return pending.get(remaining, TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            throw new DeadlineExceededException("deadline passed while waiting for coalesced call");
+        }
+        catch (ExecutionException e)
+        {
+            throw Marshal.copy(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RMIException("interrupted while waiting for coalesced call", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/** Per-call options for the remote calls made by the current thread.
+
+ <p>
+ A context is opened for a block of code with one of the static factory
+ methods and applies to every call the thread makes through a stub until it
+ is closed. Contexts nest: an inner context inherits the options of the
+ enclosing one, and can only shorten its deadline.
+
+ <pre>
+ try (CallContext context = CallContext.withDeadline(200, TimeUnit.MILLISECONDS))
+ {
+     stub.lookup(key);
+ }
+ </pre>
+ */
+public final class CallContext implements AutoCloseable
+{
+    /** Deadline value meaning that there is no deadline. */
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final ThreadLocal<CallContext> current = new ThreadLocal<>();
+
+    private final CallContext parent;
+    private final long deadline;
+    private final Lane lane;
+    private final String clientId;
+
+    private CallContext(CallContext parent, long deadline, Lane lane, String clientId)
+    {
+        this.parent = parent;
+        this.deadline = deadline;
+        this.lane = lane;
+        this.clientId = clientId;
+    }
+
+    /** Opens a context in which calls must complete within the given time.
+
+     @throws NullPointerException If <code>unit</code> is <code>null</code>.
+     */
+    public static CallContext withDeadline(long timeout, TimeUnit unit)
+    {
+        if (unit == null) throw new NullPointerException("unit == null");
+        CallContext parent = current.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (parent != null && parent.deadline != NO_DEADLINE && parent.deadline - deadline < 0)
+            deadline = parent.deadline;
+        return push(parent == null
+            ? new CallContext(null, deadline, null, null)
+            : new CallContext(parent, deadline, parent.lane, parent.clientId));
+    }
+
+    /** Opens a context in which calls are queued by skeletons in the given
+     lane, whatever the <code>@Priority</code> of their methods.
+
+     @throws NullPointerException If <code>lane</code> is <code>null</code>.
+     */
+    public static CallContext withPriority(Lane lane)
+    {
+        if (lane == null) throw new NullPointerException("lane == null");
+        CallContext parent = current.get();
+        return push(parent == null
+            ? new CallContext(null, NO_DEADLINE, lane, null)
+            : new CallContext(parent, parent.deadline, lane, parent.clientId));
+    }
+
+    /** Opens a context in which calls identify their client to skeletons by
+     the given identifier, rather than by the address they come from.
+     Skeletons share their capacity fairly between clients; see
+     <code>Dispatcher</code>.
+
+     @throws NullPointerException If <code>clientId</code> is
+     <code>null</code>.
+     */
+    public static CallContext withClientId(String clientId)
+    {
+        if (clientId == null) throw new NullPointerException("clientId == null");
+        CallContext parent = current.get();
+        return push(parent == null
+            ? new CallContext(null, NO_DEADLINE, null, clientId)
+            : new CallContext(parent, parent.deadline, parent.lane, clientId));
+    }
+
+    /** Closes the context, restoring the enclosing one. */
+    @Override
+    public void close()
+    {
+        current.set(parent);
+    }
+
+    private static CallContext push(CallContext context)
+    {
+        current.set(context);
+        return context;
+    }
+
+    /** Returns the context of the current thread, or <code>null</code> if
+     none is open, so that another thread can make calls on its behalf. */
+    static CallContext current()
+    {
+        return current.get();
+    }
+
+    /** Makes the current thread's calls use the given context, which may be
+     <code>null</code>, and returns the context it replaces. */
+    static CallContext swap(CallContext context)
+    {
+        CallContext previous = current.get();
+        current.set(context);
+        return previous;
+    }
+
+    /** Returns the deadline, as a <code>System.nanoTime</code> value, for a
+     call of the given method made now by the current thread, or
+     <code>NO_DEADLINE</code>. */
+    static long deadlineFor(Method m)
+    {
+        CallContext context = current.get();
+        long deadline = context == null ? NO_DEADLINE : context.deadline;
+        Deadline annotation = m.getAnnotation(Deadline.class);
+        if (annotation != null)
+        {
+            long methodDeadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(annotation.millis());
+            if (deadline == NO_DEADLINE || methodDeadline - deadline < 0)
+                deadline = methodDeadline;
+        }
+        return deadline;
+    }
+
+    /** Returns the lane set for the calls made now by the current thread, or
+     <code>null</code> if none is set. */
+    static Lane lane()
+    {
+        CallContext context = current.get();
+        return context == null ? null : context.lane;
+    }
+
+    /** Returns the client identifier set for the calls made now by the
+     current thread, or <code>null</code> if none is set. */
+    static String clientId()
+    {
+        CallContext context = current.get();
+        return context == null ? null : context.clientId;
+    }
+}
@@ -0,0 +1,44 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/** Identifies a remote call by its method and argument values.
+
+ <p>
+ Arguments are compared with <code>Arrays.deepEquals</code>, so arrays are
+ compared by content. The argument array is copied, but the arguments
+ themselves are not: callers must not modify an argument after using it in a
+ key.
+ */
+final class CallKey
+{
+    private static final Object[] NO_ARGS = new Object[0];
+
+    final Method method;
+    final Object[] args;
+    private final int hash;
+
+    CallKey(Method method, Object[] args)
+    {
+        this.method = method;
+        this.args = args == null ? NO_ARGS : args.clone();
+        this.hash = 31 * method.hashCode() + Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) return true;
+        if (!(obj instanceof CallKey)) return false;
+        CallKey other = (CallKey) obj;
+        return hash == other.hash && method.equals(other.method)
+            && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+}
@@ -0,0 +1,281 @@
+package rmi;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/** Circuit breaker for the calls made to one skeleton address.
+
+ <p>
+ The breaker watches the outcomes of the last <code>window</code> calls made
+ to the address by any stub. A call fails if it cannot be sent or its
+ response cannot be received; exceptions thrown by the server object count
+ as successes. A call is slow if it takes longer than the slow call
+ threshold. Once at least <code>minimumCalls</code> calls are in the window,
+ the breaker opens if the proportion of failed calls, or of slow calls,
+ reaches its threshold.
+
+ <p>
+ While the breaker is open, calls fail immediately with a
+ <code>CircuitOpenException</code>. After the open period the breaker becomes
+ half-open and lets a few trial calls through: if they all succeed it closes
+ again, and if any of them fails it opens for another period.
+
+ <p>
+ Breakers are opt-in. Stubs consult the breaker of an address only once one
+ has been created for it with <code>forEndpoint</code> or installed with
+ <code>register</code>; it is then shared by all stubs calling that address.
+ */
+public class CircuitBreaker
+{
+    /** State of a circuit breaker. */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Receives state transitions of circuit breakers. */
+    public interface Listener
+    {
+        /** Called after the breaker for <code>address</code> changes from
+         state <code>from</code> to state <code>to</code>. */
+        void stateChanged(InetSocketAddress address, State from, State to);
+    }
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+    private static final ConcurrentHashMap<InetSocketAddress, CircuitBreaker> breakers =
+        new ConcurrentHashMap<>();
+
+    private final InetSocketAddress address;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 1.0;
+    private long slowCallNanos = Long.MAX_VALUE;
+    private int minimumCalls = 10;
+    private long openNanos = 5000L * 1000000;
+    private int trialCalls = 3;
+
+    private byte[] outcomes = new byte[20];
+    private int next = 0;
+    private int recorded = 0;
+    private int failures = 0;
+    private int slow = 0;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    /** Creates a closed breaker for the given address, with default
+     settings: a window of 20 calls, at least 10 calls before tripping, a
+     failure rate threshold of 50%, no slow call threshold, an open period
+     of five seconds and three trial calls. */
+    public CircuitBreaker(InetSocketAddress address)
+    {
+        if (address == null) throw new NullPointerException("address == null");
+        this.address = address;
+    }
+
+    /** Returns the breaker for the given address, creating one with default
+     settings if there is none. */
+    public static CircuitBreaker forEndpoint(InetSocketAddress address)
+    {
+        if (address == null) throw new NullPointerException("address == null");
+        return breakers.computeIfAbsent(address, CircuitBreaker::new);
+    }
+
+    /** Makes <code>breaker</code> the breaker used by all stubs for its
+     address, replacing any breaker already used for it. */
+    public static void register(CircuitBreaker breaker)
+    {
+        if (breaker == null) throw new NullPointerException("breaker == null");
+        breakers.put(breaker.address, breaker);
+    }
+
+    /** Returns the breaker for the given address, or <code>null</code> if
+     there is none. */
+    static CircuitBreaker existing(InetSocketAddress address)
+    {
+        return breakers.isEmpty() ? null : breakers.get(address);
+    }
+
+    /** Adds a listener for the state transitions of this breaker. */
+    public void addListener(Listener listener)
+    {
+        if (listener == null) throw new NullPointerException("listener == null");
+        listeners.add(listener);
+    }
+
+    /** Sets the proportion of failed calls, between 0 and 1, at which the
+     breaker opens. */
+    public synchronized void setFailureRateThreshold(double rate)
+    {
+        if (rate <= 0 || rate > 1) throw new IllegalArgumentException("rate out of range");
+        failureRateThreshold = rate;
+    }
+
+    /** Sets the duration above which a call is slow, and the proportion of
+     slow calls, between 0 and 1, at which the breaker opens. */
+    public synchronized void setSlowCallThreshold(long millis, double rate)
+    {
+        if (millis <= 0) throw new IllegalArgumentException("millis <= 0");
+        if (rate <= 0 || rate > 1) throw new IllegalArgumentException("rate out of range");
+        slowCallNanos = millis * 1000000;
+        slowCallRateThreshold = rate;
+    }
+
+    /** Sets the number of recent calls watched, and how many of them must
+     have been made before the breaker can open. Resets the window. */
+    public synchronized void setWindow(int window, int minimumCalls)
+    {
+        if (window <= 0) throw new IllegalArgumentException("window <= 0");
+        if (minimumCalls <= 0 || minimumCalls > window)
+            throw new IllegalArgumentException("minimumCalls out of range");
+        this.outcomes = new byte[window];
+        this.minimumCalls = minimumCalls;
+        resetWindow();
+    }
+
+    /** Sets how long the breaker stays open before letting trial calls
+     through, and how many trial calls must succeed for it to close. */
+    public synchronized void setOpenPeriod(long millis, int trialCalls)
+    {
+        if (millis <= 0) throw new IllegalArgumentException("millis <= 0");
+        if (trialCalls <= 0) throw new IllegalArgumentException("trialCalls <= 0");
+        this.openNanos = millis * 1000000;
+        this.trialCalls = trialCalls;
+    }
+
+    /** Returns the current state of the breaker. */
+    public synchronized State getState()
+    {
+        return state;
+    }
+
+    /** Asks permission to make a call.
+
+     @throws CircuitOpenException If the breaker is open, or if it is
+     half-open and all trial calls have been
+     started.
+     */
+    void acquire() throws CircuitOpenException
+    {
+        boolean halfOpened = false;
+        synchronized (this)
+        {
+            if (state == State.OPEN)
+            {
+                if (System.nanoTime() - openedAt < openNanos)
+                    throw new CircuitOpenException("circuit open for " + address);
+                state = State.HALF_OPEN;
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+                halfOpened = true;
+            }
+            if (state == State.HALF_OPEN)
+            {
+                if (trialsStarted >= trialCalls)
+                    throw new CircuitOpenException("circuit half-open for " + address);
+                trialsStarted++;
+            }
+        }
+        if (halfOpened) notifyListeners(State.OPEN, State.HALF_OPEN);
+    }
+
+    /** Records a call that completed after <code>latencyNanos</code>. */
+    void succeeded(long latencyNanos)
+    {
+        record(latencyNanos > slowCallNanos ? SLOW : SUCCESS);
+    }
+
+    /** Records a call that failed. */
+    void failed()
+    {
+        record(FAILURE);
+    }
+
+    /** Records a call that was abandoned without an outcome, such as the
+     losing copy of a hedged call. */
+    synchronized void released()
+    {
+        if (state == State.HALF_OPEN && trialsStarted > trialsSucceeded) trialsStarted--;
+    }
+
+    private void record(byte outcome)
+    {
+        State from;
+        State to;
+        synchronized (this)
+        {
+            from = state;
+            if (state == State.HALF_OPEN)
+            {
+                if (outcome == SUCCESS)
+                {
+                    if (++trialsSucceeded >= trialCalls)
+                    {
+                        state = State.CLOSED;
+                        resetWindow();
+                    }
+                }
+                else
+                {
+                    open();
+                }
+            }
+            else if (state == State.CLOSED)
+            {
+                if (recorded == outcomes.length)
+                {
+                    byte evicted = outcomes[next];
+                    if (evicted == FAILURE) failures--;
+                    if (evicted == SLOW) slow--;
+                }
+                else
+                {
+                    recorded++;
+                }
+                outcomes[next] = outcome;
+                next = (next + 1) % outcomes.length;
+                if (outcome == FAILURE) failures++;
+                if (outcome == SLOW) slow++;
+                if (recorded >= minimumCalls
+                    && (failures >= failureRateThreshold * recorded
+                        || slow >= slowCallRateThreshold * recorded))
+                {
+                    open();
+                }
+            }
+            to = state;
+        }
+        if (from != to) notifyListeners(from, to);
+    }
+
+    private void open()
+    {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        resetWindow();
+    }
+
+    private void resetWindow()
+    {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slow = 0;
+    }
+
+    private void notifyListeners(State from, State to)
+    {
+        for (Listener listener : listeners)
+        {
+            try
+            {
+                listener.stateChanged(address, from, to);
+            }
+            catch (RuntimeException e)
+            {
+                // A faulty listener must not break the calls being made.
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package rmi;
+
+/** Thrown when a call is refused without contacting the skeleton, because
+ the circuit breaker for its address is open. */
+public class CircuitOpenException extends RMIException
+{
+    /** Creates a <code>CircuitOpenException</code> with the given message
+        string. */
+    public CircuitOpenException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,213 @@
+package rmi;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** The compartment formed by a bulkhead: the calls to a group of methods of a
+ skeleton, with their own concurrency limit and queue bound.
+
+ <p>
+ A call is admitted at once if fewer than <code>maxConcurrent</code>
+ invocations of the compartment are running, waits in FIFO order if fewer
+ than <code>maxQueued</code> calls are already waiting, and is otherwise
+ refused with a <code>RejectedCallException</code>. The retry hint of the
+ exception is the recent mean duration of the invocations of the
+ compartment.
+
+ @see Bulkhead
+ */
+public class Compartment
+{
+    private final String name;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Condition> waiters = new ArrayDeque<>();
+    private int maxConcurrent;
+    private int maxQueued;
+    private int active = 0;
+    private long rejected = 0;
+    private double meanNanos = 0;
+
+    Compartment(String name, int maxConcurrent, int maxQueued)
+    {
+        this.name = name;
+        setLimits(maxConcurrent, maxQueued);
+    }
+
+    /** Returns the name of the bulkhead. */
+    public String getName()
+    {
+        return name;
+    }
+
+    /** Changes the limits of the compartment. Calls already waiting keep
+     their place even if the new queue bound is smaller.
+
+     @throws IllegalArgumentException If <code>maxConcurrent</code> is not
+     positive, or if <code>maxQueued</code> is
+     negative.
+     */
+    public void setLimits(int maxConcurrent, int maxQueued)
+    {
+        if (maxConcurrent <= 0) throw new IllegalArgumentException("maxConcurrent <= 0");
+        if (maxQueued < 0) throw new IllegalArgumentException("maxQueued < 0");
+        lock.lock();
+        try
+        {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            admitWaiting();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Waits until a call may be invoked in the compartment. Every successful
+     call must be followed by a call to <code>release</code>.
+
+     @throws RejectedCallException If the compartment and its queue are full.
+     @throws InterruptedException If the thread is interrupted while waiting,
+     in which case the call has not been admitted.
+     */
+    void acquire() throws RejectedCallException, InterruptedException
+    {
+        lock.lock();
+        try
+        {
+            if (waiters.isEmpty() && active < maxConcurrent)
+            {
+                active++;
+                return;
+            }
+            if (waiters.size() >= maxQueued)
+            {
+                rejected++;
+                throw new RejectedCallException("bulkhead " + name + " full",
+                    Math.max(1, (long) (meanNanos / 1000000)));
+            }
+            Condition admitted = lock.newCondition();
+            waiters.addLast(admitted);
+            try
+            {
+                // Admission removes the condition from the queue.
+                Blocking.await(() -> {
+                    while (waiters.contains(admitted)) admitted.await();
+                });
+            }
+            catch (InterruptedException e)
+            {
+                if (!waiters.remove(admitted)) release(0);
+                throw e;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Ends an invocation admitted by <code>acquire</code>, which took
+     <code>nanos</code> nanoseconds. */
+    void release(long nanos)
+    {
+        lock.lock();
+        try
+        {
+            active--;
+            if (nanos > 0) meanNanos = meanNanos == 0 ? nanos : 0.8 * meanNanos + 0.2 * nanos;
+            admitWaiting();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void admitWaiting()
+    {
+        while (!waiters.isEmpty() && active < maxConcurrent)
+        {
+            active++;
+            waiters.pollFirst().signal();
+        }
+    }
+
+    /** Returns the maximum number of invocations running at once. */
+    public int getMaxConcurrent()
+    {
+        lock.lock();
+        try
+        {
+            return maxConcurrent;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the maximum number of calls waiting to run. */
+    public int getMaxQueued()
+    {
+        lock.lock();
+        try
+        {
+            return maxQueued;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of invocations currently running. */
+    public int active()
+    {
+        lock.lock();
+        try
+        {
+            return active;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of calls currently waiting to run. */
+    public int queued()
+    {
+        lock.lock();
+        try
+        {
+            return waiters.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of calls refused because the compartment was
+     full. */
+    public long rejected()
+    {
+        lock.lock();
+        try
+        {
+            return rejected;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "bulkhead " + name;
+    }
+}
@@ -0,0 +1,24 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Gives a remote interface method a deadline.
+
+ <p>
+ A call to the method fails with a <code>DeadlineExceededException</code> if
+ it has not completed within <code>millis</code> milliseconds. The remaining
+ time is sent to the skeleton with the call: the skeleton does not start an
+ invocation whose deadline has already passed, and interrupts the invoking
+ thread when the deadline passes during the invocation. A shorter deadline
+ set for the call with <code>CallContext</code> takes precedence.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Deadline
+{
+    /** Time, in milliseconds, allowed for each call of the method. */
+    long millis();
+}
@@ -0,0 +1,19 @@
+package rmi;
+
+/** Thrown when a remote call does not complete before its deadline. */
+public class DeadlineExceededException extends RMIException
+{
+    /** Creates a <code>DeadlineExceededException</code> with the given
+        message string. */
+    public DeadlineExceededException(String message)
+    {
+        super(message);
+    }
+
+    /** Creates a <code>DeadlineExceededException</code> with a message
+        string and the given cause. */
+    public DeadlineExceededException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,22 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks a remote interface method whose result depends only on its
+ arguments.
+
+ <p>
+ The skeleton memoizes the results of such methods in its
+ <code>MemoCache</code>, keyed by the method and the encoded argument bytes.
+ A repeated call is answered without decoding its arguments or calling the
+ server object. When the result would change for other reasons, the server
+ object must invalidate the cache; see <code>MemoCacheAware</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Deterministic
+{
+}
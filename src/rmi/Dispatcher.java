@@ -0,0 +1,801 @@
+package rmi;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Admits calls received by a skeleton for invocation, by priority lane and
+ fairly between clients.
+
+ <p>
+ At most <code>maxConcurrency</code> invocations run at once; by default the
+ number is unbounded and calls are never queued. Once the limit is reached,
+ further calls wait in the queue of their <code>Lane</code>, and each call
+ finishing admits a call from the most urgent lane with a call that may run.
+
+ <p>
+ To keep the less urgent lanes from starving, a waiting lane which has been
+ passed over <code>STARVATION_LIMIT</code> times in favour of more urgent
+ lanes is served next. Under sustained saturation each lane therefore still
+ receives a bounded share of the admissions.
+
+ <p>
+ Within a lane, each client has its own queue, and the queues are served by
+ deficit round robin: every visit to a queue credits it with a quantum, and
+ its calls are admitted while the credit covers their cost. A client with
+ many calls waiting thus gets the same share as a client with one. Clients
+ are identified by the identifier they send with their calls, if any, or
+ else by their network address.
+
+ <p>
+ Under saturation, the dispatcher can also favour short calls: see
+ <code>setCostAware</code>. Each call then carries the expected duration of
+ its method, the average kept by the skeleton's execution policy. A
+ client's waiting calls are admitted in order of expected duration, less the
+ time they have waited, so that a long call is overtaken by shorter ones for
+ at most about its own duration. The round robin between clients charges
+ each call its expected duration rather than one unit, which shares the
+ invocation time fairly between clients instead of the number of calls.
+
+ <p>
+ Each client may also be limited to a number of running invocations, beyond
+ which its calls wait even if the skeleton has capacity left, and to a call
+ rate, beyond which its calls are refused with a
+ <code>RejectedCallException</code> telling when to retry.
+
+ <p>
+ Rather than fixed, the limit can be made to adapt to the latency of the
+ invocations, and queued calls can be shed once queueing delays stay above a
+ target, so that overloaded skeletons refuse calls quickly instead of letting
+ them time out. See <code>setAdaptiveConcurrency</code> and
+ <code>setShedding</code>.
+
+ <p>
+ The time calls spent waiting is recorded for each lane.
+ */
+public class Dispatcher
+{
+    /** Number of admissions a waiting lane may be passed over before it is
+     served. */
+    static final int STARVATION_LIMIT = 8;
+    /** Credit given to a client queue on each round robin visit. */
+    static final int QUANTUM = 1;
+    /** Expected invocation time charged as one unit of cost when the
+     dispatcher is cost-aware. */
+    static final long COST_UNIT_NANOS = 100000;
+
+    /** Number of known clients above which idle clients are swept. */
+    private static final int SWEEP_THRESHOLD = 1024;
+    private static final Lane[] LANES = Lane.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Flow>[] flows = new ArrayDeque[LANES.length];
+    private final int[] queued = new int[LANES.length];
+    private final int[] skipped = new int[LANES.length];
+    private final long[] admitted = new long[LANES.length];
+    private final long[] totalWait = new long[LANES.length];
+    private final long[] maxWait = new long[LANES.length];
+    private final HashMap<Object, Client> clients = new HashMap<>();
+    private int waiting = 0;
+    private int running = 0;
+    private long rejected = 0;
+    private int maxConcurrency = Integer.MAX_VALUE;
+    private int clientConcurrency = Integer.MAX_VALUE;
+    private double clientRate = 0;
+    private int sweepAt = SWEEP_THRESHOLD;
+    private AdaptiveLimit adaptiveLimit = null;
+    private long sheddingTarget = 0;
+    private long sheddingInterval = 0;
+    private long aboveTargetUntil = 0;
+    private boolean shedding = false;
+    private long shedNext = 0;
+    private int shedCount = 0;
+    private long shed = 0;
+    private boolean costAware = false;
+    private double agingRate = 1;
+    private long sequence = 0;
+    private final long epoch = System.nanoTime();
+
+    Dispatcher()
+    {
+        for (int i = 0 ; i < flows.length ; i++) flows[i] = new ArrayDeque<>();
+    }
+
+    /** A client of the skeleton, with its running invocations and its call
+     rate budget. */
+    static class Client
+    {
+        final Object key;
+        final Flow[] flows = new Flow[LANES.length];
+        int running = 0;
+        int waiting = 0;
+        double tokens;
+        long refilled = System.nanoTime();
+
+        Client(Object key, double burst)
+        {
+            this.key = key;
+            this.tokens = burst;
+        }
+    }
+
+    /** The calls of one client waiting in one lane. */
+    private static class Flow
+    {
+        final Client client;
+        final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            (a, b) -> Double.compare(a.order, b.order));
+        long deficit = 0;
+
+        Flow(Client client)
+        {
+            this.client = client;
+        }
+    }
+
+    /** A call waiting for admission. */
+    private static class Waiter
+    {
+        final int lane;
+        final Flow flow;
+        final Condition admitted;
+        final long since = System.nanoTime();
+        final long cost;
+        /** Rank of the call in its client's queue; lowest first. */
+        final double order;
+        boolean granted = false;
+        boolean shed = false;
+
+        Waiter(int lane, Flow flow, Condition admitted, long cost, double order)
+        {
+            this.lane = lane;
+            this.flow = flow;
+            this.admitted = admitted;
+            this.cost = cost;
+            this.order = order;
+        }
+    }
+
+    /** Sets a fixed maximum number of invocations running at once, admitting
+     waiting calls if it was raised. Stops any adaptation of the limit.
+
+     @throws IllegalArgumentException If <code>maxConcurrency</code> is not
+     positive.
+     */
+    public void setMaxConcurrency(int maxConcurrency)
+    {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency <= 0");
+        lock.lock();
+        try
+        {
+            this.adaptiveLimit = null;
+            this.maxConcurrency = maxConcurrency;
+            admitWaiting();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Makes the maximum number of invocations running at once adapt to the
+     latency of the invocations, between <code>minLimit</code> and
+     <code>maxLimit</code>. See <code>AdaptiveLimit</code>.
+
+     @throws IllegalArgumentException If the limits are not positive and
+     ordered, with <code>initialLimit</code>
+     between the other two.
+     */
+    public void setAdaptiveConcurrency(int initialLimit, int minLimit, int maxLimit)
+    {
+        AdaptiveLimit limit = new AdaptiveLimit(initialLimit, minLimit, maxLimit);
+        lock.lock();
+        try
+        {
+            this.adaptiveLimit = limit;
+            this.maxConcurrency = limit.limit();
+            admitWaiting();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Makes the dispatcher shed queued calls, CoDel-style, once calls have
+     waited longer than <code>targetMillis</code> for a whole
+     <code>intervalMillis</code>. Shed calls fail at once with a
+     <code>RejectedCallException</code>, whose retry hint is the interval.
+     A target of zero stops shedding.
+
+     @throws IllegalArgumentException If either time is negative, or if the
+     interval is zero while the target is not.
+     */
+    public void setShedding(long targetMillis, long intervalMillis)
+    {
+        if (targetMillis < 0 || intervalMillis < 0)
+            throw new IllegalArgumentException("negative time");
+        if (targetMillis > 0 && intervalMillis == 0)
+            throw new IllegalArgumentException("intervalMillis == 0");
+        lock.lock();
+        try
+        {
+            this.sheddingTarget = targetMillis * 1000000;
+            this.sheddingInterval = intervalMillis * 1000000;
+            this.aboveTargetUntil = 0;
+            this.shedding = false;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Sets whether waiting calls are admitted by expected duration, and the
+     round robin between clients charges calls their expected duration. Off
+     by default, in which case each client's calls are admitted in arrival
+     order. Takes effect for calls queued from then on.
+
+     @param agingRate Time by which a waiting call's expected duration is
+     reduced for each unit of time it has waited. The
+     larger the rate, the sooner long calls overtake short
+     ones.
+     @throws IllegalArgumentException If <code>agingRate</code> is not
+     positive.
+     */
+    public void setCostAware(boolean enabled, double agingRate)
+    {
+        if (!(agingRate > 0)) throw new IllegalArgumentException("agingRate <= 0");
+        lock.lock();
+        try
+        {
+            this.costAware = enabled;
+            this.agingRate = agingRate;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns <code>true</code> if calls are admitted by expected
+     duration. */
+    public boolean isCostAware()
+    {
+        lock.lock();
+        try
+        {
+            return costAware;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the maximum number of invocations running at once, as
+     currently adapted if the limit is adaptive. */
+    public int getMaxConcurrency()
+    {
+        lock.lock();
+        try
+        {
+            return maxConcurrency;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Sets the maximum number of invocations running at once for any one
+     client, admitting waiting calls if it was raised. Unbounded by default.
+
+     @throws IllegalArgumentException If <code>maxConcurrency</code> is not
+     positive.
+     */
+    public void setClientConcurrency(int maxConcurrency)
+    {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency <= 0");
+        lock.lock();
+        try
+        {
+            this.clientConcurrency = maxConcurrency;
+            admitWaiting();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Sets the number of calls per second allowed to any one client, with
+     bursts of up to one second's worth of calls. Zero, the default, removes
+     the limit.
+
+     @throws IllegalArgumentException If <code>callsPerSecond</code> is
+     negative.
+     */
+    public void setClientRate(double callsPerSecond)
+    {
+        if (callsPerSecond < 0) throw new IllegalArgumentException("callsPerSecond < 0");
+        lock.lock();
+        try
+        {
+            this.clientRate = callsPerSecond;
+            for (Client client : clients.values()) client.tokens = burst();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Waits until a call of the given client in the given lane may be
+     invoked. Every successful call must be followed by a call to
+     <code>release</code> with the client returned.
+
+     @throws RejectedCallException If the client has exceeded its call rate.
+     @throws InterruptedException If the thread is interrupted while waiting,
+     in which case the call has not been admitted.
+     */
+    Client acquire(Lane lane, Object clientKey)
+        throws RejectedCallException, InterruptedException
+    {
+        return acquire(lane, clientKey, 0);
+    }
+
+    /** Waits until a call expected to run for <code>expectedNanos</code>
+     may be invoked, as for <code>acquire(lane, clientKey)</code>. The
+     expected duration only matters if the dispatcher is cost-aware. */
+    Client acquire(Lane lane, Object clientKey, long expectedNanos)
+        throws RejectedCallException, InterruptedException
+    {
+        int index = lane.ordinal();
+        lock.lock();
+        try
+        {
+            Client client = clients.get(clientKey);
+            if (client == null)
+            {
+                if (clients.size() >= sweepAt) sweepIdle();
+                client = new Client(clientKey, burst());
+                clients.put(clientKey, client);
+            }
+            if (clientRate > 0) spendToken(client);
+
+            if (waiting == 0 && running < maxConcurrency && client.running < clientConcurrency)
+            {
+                running++;
+                client.running++;
+                recordWait(index, 0);
+                return client;
+            }
+            Flow flow = client.flows[index];
+            if (flow == null)
+            {
+                flow = client.flows[index] = new Flow(client);
+                flows[index].addLast(flow);
+            }
+            Waiter waiter;
+            if (costAware)
+            {
+                // Ranking by expected duration plus scaled arrival time is
+                // ranking by expected duration less scaled waiting time, at
+                // any instant.
+                waiter = new Waiter(index, flow, lock.newCondition(),
+                    Math.max(1, expectedNanos / COST_UNIT_NANOS),
+                    expectedNanos + agingRate * (System.nanoTime() - epoch));
+            }
+            else
+            {
+                waiter = new Waiter(index, flow, lock.newCondition(), 1, sequence++);
+            }
+            flow.waiters.add(waiter);
+            queued[index]++;
+            client.waiting++;
+            waiting++;
+            // The skeleton may have capacity left that the waiting calls of
+            // clients at their limit cannot use.
+            admitWaiting();
+            try
+            {
+                Blocking.await(() -> {
+                    while (!waiter.granted && !waiter.shed) waiter.admitted.await();
+                });
+            }
+            catch (InterruptedException e)
+            {
+                if (waiter.granted)
+                {
+                    finish(client);
+                }
+                else if (!waiter.shed)
+                {
+                    flow.waiters.remove(waiter);
+                    if (flow.waiters.isEmpty()) removeFlow(flow, index);
+                    queued[index]--;
+                    client.waiting--;
+                    waiting--;
+                    forgetIfIdle(client);
+                }
+                throw e;
+            }
+            long wait = System.nanoTime() - waiter.since;
+            if (waiter.shed)
+            {
+                forgetIfIdle(client);
+                throw new RejectedCallException("call shed after queueing for "
+                    + wait / 1000000 + " ms", Math.max(1, sheddingInterval / 1000000));
+            }
+            recordWait(index, wait);
+            return client;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Ends an invocation admitted by <code>acquire</code>, which took
+     <code>latencyNanos</code> nanoseconds. */
+    void release(Client client, long latencyNanos)
+    {
+        lock.lock();
+        try
+        {
+            if (adaptiveLimit != null) maxConcurrency = adaptiveLimit.update(latencyNanos, running);
+            finish(client);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void finish(Client client)
+    {
+        running--;
+        client.running--;
+        admitWaiting();
+        forgetIfIdle(client);
+    }
+
+    private double burst()
+    {
+        return Math.max(1, clientRate);
+    }
+
+    /** Takes one token from the client's rate budget.
+
+     @throws RejectedCallException If no token is available.
+     */
+    private void spendToken(Client client) throws RejectedCallException
+    {
+        long now = System.nanoTime();
+        client.tokens = Math.min(burst(), client.tokens + (now - client.refilled) * clientRate / 1e9);
+        client.refilled = now;
+        if (client.tokens < 1)
+        {
+            rejected++;
+            long retryAfter = (long) Math.ceil((1 - client.tokens) * 1000 / clientRate);
+            throw new RejectedCallException("call rate of client exceeded", retryAfter);
+        }
+        client.tokens -= 1;
+    }
+
+    /** Drops the state of a client with no calls running or waiting, once it
+     no longer holds back its call rate. */
+    private void forgetIfIdle(Client client)
+    {
+        if (client.running > 0 || client.waiting > 0) return;
+        if (clientRate > 0
+            && client.tokens + (System.nanoTime() - client.refilled) * clientRate / 1e9 < burst())
+            return;
+        clients.remove(client.key, client);
+    }
+
+    /** Drops every idle client, and sets the size at which to sweep again
+     so that sweeps take constant time per client added. */
+    private void sweepIdle()
+    {
+        for (Client client : clients.values().toArray(new Client[0])) forgetIfIdle(client);
+        sweepAt = Math.max(SWEEP_THRESHOLD, 2 * clients.size());
+    }
+
+    private void admitWaiting()
+    {
+        while (waiting > 0 && running < maxConcurrency)
+        {
+            Waiter waiter = nextWaiter();
+            if (waiter == null) return;
+            Client client = waiter.flow.client;
+            queued[waiter.lane]--;
+            client.waiting--;
+            waiting--;
+            if (shouldShed(waiter))
+            {
+                shed++;
+                waiter.shed = true;
+            }
+            else
+            {
+                running++;
+                client.running++;
+                waiter.granted = true;
+            }
+            waiter.admitted.signal();
+        }
+    }
+
+    /** Decides whether to shed a call leaving the queue, following CoDel.
+
+     <p>
+     Calls are shed once the time calls spend queueing has stayed above the
+     target for a whole interval. Shedding then continues, one call at a
+     time, at intervals shrinking with the square root of the number of
+     calls shed, until a call leaves the queue within the target. Calls in
+     the <code>CRITICAL</code> lane are never shed.
+     */
+    private boolean shouldShed(Waiter waiter)
+    {
+        if (sheddingTarget == 0) return false;
+        long now = System.nanoTime();
+        boolean above;
+        if (now - waiter.since < sheddingTarget || waiting == 0)
+        {
+            aboveTargetUntil = 0;
+            above = false;
+        }
+        else if (aboveTargetUntil == 0)
+        {
+            aboveTargetUntil = now + sheddingInterval;
+            above = false;
+        }
+        else
+        {
+            above = now - aboveTargetUntil >= 0;
+        }
+
+        if (shedding)
+        {
+            if (!above)
+            {
+                shedding = false;
+                return false;
+            }
+            if (now - shedNext < 0 || waiter.lane == Lane.CRITICAL.ordinal()) return false;
+            shedCount++;
+            shedNext += (long) (sheddingInterval / Math.sqrt(shedCount));
+            return true;
+        }
+        if (!above || waiter.lane == Lane.CRITICAL.ordinal()) return false;
+        shedding = true;
+        // Resume near the previous shedding rate if shedding stopped only
+        // recently.
+        shedCount = shedCount > 2 && now - shedNext < 16 * sheddingInterval ? shedCount - 2 : 1;
+        shedNext = now + (long) (sheddingInterval / Math.sqrt(shedCount));
+        return true;
+    }
+
+    /** Chooses and dequeues the next call to admit: from the most urgent lane
+     which has starved, or else from the most urgent lane with a call that
+     may run. Returns <code>null</code> if every waiting call belongs to a
+     client at its concurrency limit. */
+    private Waiter nextWaiter()
+    {
+        int chosen = -1;
+        for (int i = 0 ; i < flows.length ; i++)
+        {
+            if (!isEligible(i)) continue;
+            if (chosen < 0) chosen = i;
+            else if (skipped[i] >= STARVATION_LIMIT)
+            {
+                chosen = i;
+                break;
+            }
+        }
+        if (chosen < 0) return null;
+        for (int i = chosen + 1 ; i < flows.length ; i++)
+        {
+            if (isEligible(i)) skipped[i]++;
+        }
+        skipped[chosen] = 0;
+        return nextInLane(chosen);
+    }
+
+    private boolean isEligible(int lane)
+    {
+        if (queued[lane] == 0) return false;
+        if (clientConcurrency == Integer.MAX_VALUE) return true;
+        for (Flow flow : flows[lane])
+        {
+            if (flow.client.running < clientConcurrency) return true;
+        }
+        return false;
+    }
+
+    /** Dequeues the next call of an eligible lane by deficit round robin. */
+    private Waiter nextInLane(int lane)
+    {
+        ArrayDeque<Flow> ring = flows[lane];
+        int visited = 0;
+        while (true)
+        {
+            if (visited == ring.size())
+            {
+                // A whole round admitted nothing: credit every queue with
+                // the rounds it would take for the first to afford its call.
+                creditRounds(ring);
+                visited = 0;
+            }
+            visited++;
+            Flow flow = ring.peekFirst();
+            if (flow.client.running >= clientConcurrency)
+            {
+                ring.addLast(ring.pollFirst());
+                continue;
+            }
+            Waiter waiter = flow.waiters.peek();
+            if (flow.deficit >= waiter.cost)
+            {
+                flow.deficit -= waiter.cost;
+                flow.waiters.poll();
+                if (flow.waiters.isEmpty()) removeFlow(flow, lane);
+                return waiter;
+            }
+            flow.deficit += QUANTUM;
+            ring.addLast(ring.pollFirst());
+        }
+    }
+
+    private void creditRounds(ArrayDeque<Flow> ring)
+    {
+        long rounds = Long.MAX_VALUE;
+        for (Flow flow : ring)
+        {
+            if (flow.client.running >= clientConcurrency) continue;
+            long shortfall = flow.waiters.peek().cost - flow.deficit;
+            rounds = Math.min(rounds, (shortfall + QUANTUM - 1) / QUANTUM);
+        }
+        if (rounds <= 0 || rounds == Long.MAX_VALUE) return;
+        for (Flow flow : ring)
+        {
+            if (flow.client.running < clientConcurrency) flow.deficit += rounds * QUANTUM;
+        }
+    }
+
+    private void removeFlow(Flow flow, int lane)
+    {
+        flows[lane].remove(flow);
+        flow.client.flows[lane] = null;
+    }
+
+    private void recordWait(int lane, long nanos)
+    {
+        admitted[lane]++;
+        totalWait[lane] += nanos;
+        if (nanos > maxWait[lane]) maxWait[lane] = nanos;
+    }
+
+    /** Returns the number of invocations currently running. */
+    public int running()
+    {
+        lock.lock();
+        try
+        {
+            return running;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of clients with calls running or waiting, or with
+     a call rate budget not yet replenished. */
+    public int clients()
+    {
+        lock.lock();
+        try
+        {
+            return clients.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of queued calls shed because calls were waiting
+     too long. */
+    public long shed()
+    {
+        lock.lock();
+        try
+        {
+            return shed;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of calls refused because their client exceeded its
+     call rate. */
+    public long rejected()
+    {
+        lock.lock();
+        try
+        {
+            return rejected;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of calls currently waiting in the given lane. */
+    public int waiting(Lane lane)
+    {
+        lock.lock();
+        try
+        {
+            return queued[lane.ordinal()];
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of calls admitted from the given lane. */
+    public long admitted(Lane lane)
+    {
+        lock.lock();
+        try
+        {
+            return admitted[lane.ordinal()];
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the mean time, in nanoseconds, that calls admitted from the
+     given lane spent waiting. */
+    public long meanWaitNanos(Lane lane)
+    {
+        lock.lock();
+        try
+        {
+            int i = lane.ordinal();
+            return admitted[i] == 0 ? 0 : totalWait[i] / admitted[i];
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the longest time, in nanoseconds, that a call admitted from
+     the given lane spent waiting. */
+    public long maxWaitNanos(Lane lane)
+    {
+        lock.lock();
+        try
+        {
+            return maxWait[lane.ordinal()];
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package rmi;
+
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** One skeleton of a set of equivalent skeletons, together with the
+ statistics used to balance calls across the set.
+
+ <p>
+ The latency estimate is an exponentially weighted moving average of the
+ durations of successful calls. The load hint is the number of calls the
+ skeleton reported to be executing in its last response. After
+ <code>EJECT_AFTER</code> consecutive transport failures the endpoint is
+ ejected for a time that doubles with each ejection, up to
+ <code>MAX_EJECTION_MILLIS</code>.
+ */
+class Endpoint implements Serializable
+{
+    static final int EJECT_AFTER = 3;
+    static final long BASE_EJECTION_MILLIS = 1000;
+    static final long MAX_EJECTION_MILLIS = 30000;
+    private static final double ALPHA = 0.2;
+
+    final InetSocketAddress address;
+    final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double latencyNanos = 0;
+    private volatile int load = 0;
+    private int failures = 0;
+    private int ejections = 0;
+    private volatile long ejectedUntil = 0;
+
+    Endpoint(InetSocketAddress address)
+    {
+        this.address = address;
+    }
+
+    /** Returns the estimated cost of sending one more call to this endpoint.
+     Endpoints with no measurements yet cost nothing, so that they are tried
+     early. */
+    double cost()
+    {
+        return latencyNanos * (1 + inFlight.get() + load);
+    }
+
+    /** Returns the latency estimate, in nanoseconds. */
+    double latency()
+    {
+        return latencyNanos;
+    }
+
+    boolean isEjected(long nowMillis)
+    {
+        return nowMillis < ejectedUntil;
+    }
+
+    long ejectedUntil()
+    {
+        return ejectedUntil;
+    }
+
+    synchronized void succeeded(long latencyNanos, int load)
+    {
+        this.latencyNanos = this.latencyNanos == 0
+            ? latencyNanos
+            : this.latencyNanos + ALPHA * (latencyNanos - this.latencyNanos);
+        this.load = load;
+        this.failures = 0;
+        this.ejections = 0;
+    }
+
+    synchronized void failed(long nowMillis)
+    {
+        if (++failures < EJECT_AFTER) return;
+        failures = 0;
+        long ejection = Math.min(MAX_EJECTION_MILLIS,
+            BASE_EJECTION_MILLIS << Math.min(ejections, 16));
+        ejections++;
+        ejectedUntil = nowMillis + ejection;
+    }
+
+    @Override
+    public String toString()
+    {
+        return address.toString();
+    }
+}
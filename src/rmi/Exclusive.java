@@ -0,0 +1,31 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Makes the skeleton invoke a method of the server object alone.
+
+ <p>
+ While a method marked <code>@Exclusive</code> runs, the skeleton starts no
+ other invocation of an <code>@Exclusive</code> or <code>@ReadOnly</code>
+ method on the same server object, and waits for those already running
+ before starting it. Methods marked <code>@Unsynchronized</code>, and
+ unmarked methods of server objects without a default mode, are not held
+ back.
+
+ <p>
+ The annotation may be placed on a method of the remote interface or of the
+ server object's class, or on the interface or the class itself to make it
+ the default for their methods. A mode on a method takes precedence over a
+ default, and the server object's class takes precedence over the
+ interface. A server object whose class is marked <code>@Exclusive</code>
+ need not be thread-safe; marking its queries <code>@ReadOnly</code> then
+ lets them run concurrently with each other.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Exclusive
+{
+}
@@ -0,0 +1,19 @@
+package rmi;
+
+/** Threads on which skeletons run the invocations of a method.
+
+ @see RunOn
+ @see ExecutionPolicy
+ */
+public enum Execution
+{
+    /** On the listening thread, right after the call is read, with no
+     handoff. For methods which take microseconds and never block. */
+    INLINE,
+    /** On a fork-join pool with one thread per processor. For methods which
+     compute without blocking. Calls waiting there for admission or for the
+     server object let the pool start spare threads meanwhile. */
+    CPU,
+    /** On a thread of its own. For methods which block or run long. */
+    BLOCKING
+}
@@ -0,0 +1,216 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Chooses, for each method of a skeleton, whether its calls run inline on
+ the listening thread or on a thread of their own.
+
+ <p>
+ Handing a call to another thread costs more than a trivial method takes to
+ run. The policy keeps a moving average of the time each method spends in
+ the server object. Once a method has been seen often enough, it runs
+ inline while its average stays below the offload threshold, and is
+ offloaded again when the average rises above it. It only starts running
+ inline once its average has fallen below the lower inline threshold, so
+ that a method near the boundary does not flip back and forth. Methods start
+ offloaded.
+
+ <p>
+ An inline call which runs much longer than the offload threshold holds up
+ the skeleton's listening thread. The skeleton then starts a new listening
+ thread and leaves the old one to finish the call. The method is offloaded
+ until it has been measured anew, and for good after a few such stalls.
+
+ <p>
+ <code>@RunOn</code> overrides the learned choice. While no method runs
+ inline or on the CPU pool, calls are read on their own threads as before,
+ and the listening thread only accepts connections.
+ */
+public class ExecutionPolicy
+{
+    /** Number of invocations of a method measured before its execution is
+     chosen from its cost. */
+    static final int MIN_SAMPLES = 16;
+    /** Number of stalls after which a method is offloaded for good. */
+    static final int MAX_STALLS = 3;
+    /** Ratio of the time an inline call may run before it counts as a stall
+     to the offload threshold. */
+    static final int STALL_FACTOR = 10;
+    private static final double SMOOTHING = 0.1;
+
+    private final ConcurrentHashMap<Method, Cost> costs = new ConcurrentHashMap<>();
+    /** Number of methods currently run inline or on the CPU pool. */
+    private final AtomicInteger listenerMethods = new AtomicInteger();
+    private final AtomicLong stalls = new AtomicLong();
+    private volatile long inlineBelowNanos = TimeUnit.MICROSECONDS.toNanos(250);
+    private volatile long offloadAboveNanos = TimeUnit.MICROSECONDS.toNanos(2000);
+    private volatile boolean enabled = true;
+
+    private static final class Cost
+    {
+        final Execution fixed;
+        volatile Execution current;
+        double meanNanos = 0;
+        int samples = 0;
+        int stalls = 0;
+
+        Cost(Execution fixed)
+        {
+            this.fixed = fixed;
+            this.current = fixed == null ? Execution.BLOCKING : fixed;
+        }
+    }
+
+    ExecutionPolicy() {}
+
+    /** Sets the average durations below which a method starts running
+     inline, and above which it is offloaded again.
+
+     @throws IllegalArgumentException If <code>inlineBelowMicros</code> is not
+     positive or not below
+     <code>offloadAboveMicros</code>.
+     */
+    public void setThresholds(long inlineBelowMicros, long offloadAboveMicros)
+    {
+        if (inlineBelowMicros <= 0) throw new IllegalArgumentException("inlineBelowMicros <= 0");
+        if (offloadAboveMicros <= inlineBelowMicros)
+            throw new IllegalArgumentException("offloadAboveMicros <= inlineBelowMicros");
+        this.inlineBelowNanos = TimeUnit.MICROSECONDS.toNanos(inlineBelowMicros);
+        this.offloadAboveNanos = TimeUnit.MICROSECONDS.toNanos(offloadAboveMicros);
+    }
+
+    /** Sets whether calls may run on the listening thread or the CPU pool.
+     When disabled, every call is read and run on a thread of its own. */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /** Returns whether calls may run on the listening thread or the CPU
+     pool. */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /** Returns the execution currently chosen for the calls of a method. */
+    public Execution executionOf(Method method)
+    {
+        if (!enabled) return Execution.BLOCKING;
+        Cost cost = costs.get(method);
+        return cost == null ? Execution.BLOCKING : cost.current;
+    }
+
+    /** Returns the average time the calls of a method have spent in the
+     server object, in microseconds, or 0 if none has been measured. */
+    public double meanMicros(Method method)
+    {
+        Cost cost = costs.get(method);
+        if (cost == null) return 0;
+        synchronized (cost)
+        {
+            return cost.meanNanos / 1000;
+        }
+    }
+
+    /** Returns the expected time a call of a method spends in the server
+     object, in nanoseconds, or 0 if none has been measured. A cost-aware
+     <code>Dispatcher</code> ranks waiting calls by it. */
+    long expectedNanos(Method method)
+    {
+        Cost cost = costs.get(method);
+        if (cost == null) return 0;
+        synchronized (cost)
+        {
+            return (long) cost.meanNanos;
+        }
+    }
+
+    /** Returns the number of inline calls which held up the listening
+     thread. */
+    public long stalls()
+    {
+        return stalls.get();
+    }
+
+    /** Records the <code>@RunOn</code> executions of the methods of the
+     remote interface. */
+    void declare(Class<?> c)
+    {
+        for (Method method : c.getMethods())
+        {
+            RunOn runOn = method.getAnnotation(RunOn.class);
+            Cost cost = new Cost(runOn == null ? null : runOn.value());
+            if (costs.putIfAbsent(method, cost) == null && cost.current != Execution.BLOCKING)
+                listenerMethods.incrementAndGet();
+        }
+    }
+
+    /** Returns <code>true</code> if calls are to be read on the listening
+     thread, because some method runs inline or on the CPU pool. */
+    boolean readsOnListener()
+    {
+        return enabled && listenerMethods.get() > 0;
+    }
+
+    /** Returns how long an inline call may run before the listening thread
+     is replaced, in nanoseconds. */
+    long stallNanos()
+    {
+        return STALL_FACTOR * offloadAboveNanos;
+    }
+
+    /** Records an invocation of a method which spent
+     <code>elapsedNanos</code> in the server object. */
+    void record(Method method, long elapsedNanos)
+    {
+        Cost cost = costs.get(method);
+        if (cost == null) return;
+        synchronized (cost)
+        {
+            // A pause of the whole process should not offload a method at
+            // once; a method which is really slow gets there a little later,
+            // and its average keeps growing towards its actual cost.
+            long sample = Math.min(elapsedNanos,
+                Math.max(2 * offloadAboveNanos, (long) (4 * cost.meanNanos)));
+            cost.samples++;
+            cost.meanNanos = cost.samples == 1 ? sample
+                : cost.meanNanos + SMOOTHING * (sample - cost.meanNanos);
+            if (cost.fixed != null || cost.stalls >= MAX_STALLS || cost.samples < MIN_SAMPLES)
+                return;
+            if (cost.current == Execution.INLINE && cost.meanNanos > offloadAboveNanos)
+                move(cost, Execution.BLOCKING);
+            else if (cost.current == Execution.BLOCKING && cost.meanNanos < inlineBelowNanos)
+                move(cost, Execution.INLINE);
+        }
+    }
+
+    /** Records that an inline call of a method held up the listening thread,
+     and offloads the method unless it is fixed inline. The method may run
+     inline again once it has been measured anew, up to
+     <code>MAX_STALLS</code> times. */
+    void stalled(Method method)
+    {
+        stalls.incrementAndGet();
+        Cost cost = costs.get(method);
+        if (cost == null) return;
+        synchronized (cost)
+        {
+            if (cost.fixed != null) return;
+            cost.stalls++;
+            cost.samples = 0;
+            if (cost.current == Execution.INLINE) move(cost, Execution.BLOCKING);
+        }
+    }
+
+    private void move(Cost cost, Execution next)
+    {
+        if (cost.current == Execution.BLOCKING) listenerMethods.incrementAndGet();
+        if (next == Execution.BLOCKING) listenerMethods.decrementAndGet();
+        cost.current = next;
+    }
+}
@@ -0,0 +1,108 @@
+package rmi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Outcome of a call sent to every skeleton of a group in parallel.
+
+ <p>
+ The call succeeds as soon as <code>needed</code> copies have succeeded, and
+ fails as soon as so many copies have failed that this can no longer happen.
+ Either way, the copies still in flight are then cancelled.
+ */
+class GroupCall
+{
+    final PendingCall[] copies;
+    private final int needed;
+    private final Object[] values;
+    private final boolean[] finished;
+    private final boolean[] successful;
+    private int succeeded = 0;
+    private int failed = 0;
+    private Throwable lastFailure;
+
+    /** Creates a call of <code>n</code> copies sharing the given deadline,
+     of which <code>needed</code> must succeed. */
+    GroupCall(int n, int needed, long deadline)
+    {
+        this.needed = needed;
+        this.values = new Object[n];
+        this.finished = new boolean[n];
+        this.successful = new boolean[n];
+        this.copies = new PendingCall[n];
+        for (int i = 0 ; i < n ; i++) copies[i] = new PendingCall(deadline);
+    }
+
+    private boolean isDone()
+    {
+        return succeeded >= needed || failed > copies.length - needed;
+    }
+
+    synchronized void succeeded(int copy, Object value)
+    {
+        finished[copy] = true;
+        if (isDone()) return;
+        values[copy] = value;
+        successful[copy] = true;
+        succeeded++;
+        finishIfDone();
+    }
+
+    synchronized void failed(int copy, Throwable t)
+    {
+        finished[copy] = true;
+        if (isDone()) return;
+        failed++;
+        lastFailure = t;
+        finishIfDone();
+    }
+
+    private void finishIfDone()
+    {
+        if (!isDone()) return;
+        cancelUnfinished();
+        notifyAll();
+    }
+
+    private void cancelUnfinished()
+    {
+        for (int i = 0 ; i < copies.length ; i++)
+        {
+            if (!finished[i]) copies[i].cancel();
+        }
+    }
+
+    /** Waits until the call succeeds or fails. Returns the values of the
+     successful copies, in the order of the copies.
+
+     @throws RMIException If fewer than <code>needed</code> copies succeeded,
+     or if the calling thread is interrupted.
+     */
+    synchronized List<Object> await() throws RMIException
+    {
+        while (!isDone())
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                cancelUnfinished();
+                Thread.currentThread().interrupt();
+                throw new RMIException("interrupted while waiting for group call", e);
+            }
+        }
+        if (succeeded >= needed)
+        {
+            List<Object> results = new ArrayList<>(succeeded);
+            for (int i = 0 ; i < values.length ; i++)
+            {
+                if (successful[i]) results.add(values[i]);
+            }
+            return results;
+        }
+        throw new RMIException(failed + " of " + copies.length + " calls failed, "
+                               + needed + " successes needed", lastFailure);
+    }
+}
@@ -0,0 +1,178 @@
+package rmi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Stub invoking a method on every skeleton of a group in parallel.
+
+ <p>
+ The call to make is described by an <code>Invocation</code>, which calls
+ one method on the stub it is given, for example
+ <code>group.all(s -> s.invalidate(key))</code>. The call is then sent to all
+ skeletons at once, each copy over its own connection, and the group call
+ completes once enough copies have succeeded: all of them for
+ <code>all</code>, one for <code>first</code>, or <code>k</code> for
+ <code>quorum</code>. The copies still in flight at that point are cancelled.
+ A copy succeeds if its skeleton returns normally; exceptions thrown by the
+ server object count as failures.
+
+ <p>
+ Deadlines set with <code>@Deadline</code> or <code>CallContext</code> apply
+ to every copy, and so do the lane and client identifier set with
+ <code>CallContext</code>.
+ */
+public class GroupStub<T>
+{
+    /** A call to one method of a remote interface. */
+    public interface Invocation<T, R>
+    {
+        /** Calls one method of <code>stub</code> and returns its result. */
+        R invoke(T stub) throws RMIException;
+    }
+
+    private static final ExecutorService copyExecutor =
+        Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-group");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final Class<T> c;
+    private final InetSocketAddress[] addresses;
+    private final RemoteInvocationHandler<T> transport;
+
+    GroupStub(Class<T> c, Collection<InetSocketAddress> addresses)
+    {
+        if (addresses == null) throw new NullPointerException("addresses == null");
+        LinkedHashSet<InetSocketAddress> distinct = new LinkedHashSet<>(addresses);
+        if (distinct.isEmpty()) throw new IllegalArgumentException("no addresses");
+        if (distinct.contains(null)) throw new NullPointerException("address == null");
+        this.c = c;
+        this.addresses = distinct.toArray(new InetSocketAddress[0]);
+        this.transport = new RemoteInvocationHandler<>(c);
+    }
+
+    /** Returns the addresses of the skeletons in the group. */
+    public List<InetSocketAddress> addresses()
+    {
+        return Collections.unmodifiableList(Arrays.asList(addresses));
+    }
+
+    /** Makes the call on every skeleton, and returns their results in the
+     order of <code>addresses()</code>.
+
+     @throws RMIException If any copy fails.
+     */
+    public <R> List<R> all(Invocation<T, R> invocation) throws RMIException
+    {
+        return quorum(invocation, addresses.length);
+    }
+
+    /** Makes the call on every skeleton, and returns the first successful
+     result.
+
+     @throws RMIException If every copy fails.
+     */
+    public <R> R first(Invocation<T, R> invocation) throws RMIException
+    {
+        return quorum(invocation, 1).get(0);
+    }
+
+    /** Makes the call on every skeleton, and returns the results of the first
+     <code>k</code> copies to succeed, in the order of
+     <code>addresses()</code>.
+
+     @throws IllegalArgumentException If <code>k</code> is not between 1 and
+     the number of skeletons.
+     @throws RMIException If more than <code>n - k</code> copies fail.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> List<R> quorum(Invocation<T, R> invocation, int k) throws RMIException
+    {
+        if (k < 1 || k > addresses.length)
+            throw new IllegalArgumentException("k out of range: " + k);
+        Recorder recorder = record(invocation);
+        Method m = recorder.method;
+        Object[] args = recorder.args;
+
+        GroupCall call = new GroupCall(addresses.length, k, CallContext.deadlineFor(m));
+        CallContext context = CallContext.current();
+        for (int i = 0 ; i < addresses.length ; i++)
+        {
+            int copy = i;
+            copyExecutor.execute(() -> {
+                CallContext previous = CallContext.swap(context);
+                try
+                {
+                    Return ret = transport.exchange(addresses[copy], m, args, call.copies[copy]);
+                    call.succeeded(copy, RemoteInvocationHandler.unpack(ret));
+                }
+                catch (Throwable t)
+                {
+                    call.failed(copy, t);
+                }
+                finally
+                {
+                    CallContext.swap(previous);
+                }
+            });
+        }
+
+        return (List<R>) (List<?>) call.await();
+    }
+
+    /** Runs the invocation against a proxy which records the method called
+     and its arguments. */
+    private Recorder record(Invocation<T, ?> invocation) throws RMIException
+    {
+        Recorder recorder = new Recorder();
+        T proxy = c.cast(Proxy.newProxyInstance(c.getClassLoader(), new Class<?>[] {c}, recorder));
+        invocation.invoke(proxy);
+        if (recorder.method == null)
+            throw new IllegalArgumentException("invocation did not call a remote method");
+        return recorder;
+    }
+
+    /** Records the single remote method called through a proxy. */
+    private static class Recorder implements InvocationHandler
+    {
+        Method method;
+        Object[] args;
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args)
+        {
+            if (m.getDeclaringClass() == Object.class)
+                throw new IllegalArgumentException("invocation called " + m.getName());
+            if (method != null)
+                throw new IllegalArgumentException("invocation called more than one method");
+            method = m;
+            this.args = args;
+            Class<?> type = m.getReturnType();
+            if (!type.isPrimitive() || type == void.class) return null;
+            if (type == boolean.class) return false;
+            if (type == char.class) return '\0';
+            if (type == byte.class) return (byte) 0;
+            if (type == short.class) return (short) 0;
+            if (type == int.class) return 0;
+            if (type == long.class) return 0L;
+            if (type == float.class) return 0f;
+            return 0d;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return c.getName() + " @ " + addresses();
+    }
+}
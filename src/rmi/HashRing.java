@@ -0,0 +1,186 @@
+package rmi;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Consistent-hash ring assigning shard keys to skeletons.
+
+ <p>
+ Each skeleton is placed on the ring at <code>virtualNodes</code> points
+ derived from its address, and a key is assigned to the skeleton owning the
+ first point at or after the hash of the key. Adding or removing a skeleton
+ therefore moves only the keys falling next to its points, about
+ <code>1 / n</code> of the keys for <code>n</code> skeletons, and the many
+ points per skeleton keep the shares of the skeletons close to equal.
+
+ <p>
+ The ring may be changed at any time with <code>add</code> and
+ <code>remove</code>; sharded stubs created over it route their following
+ calls according to the new ring. Keys are hashed from their serialized form,
+ so that all clients assign equal keys to the same skeleton.
+
+ <p>
+ The ring also keeps an approximate count of the most frequent keys routed to
+ each skeleton, reported by <code>hotKeys</code>.
+ */
+public class HashRing implements Serializable
+{
+    /** Default number of points per skeleton. */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int virtualNodes;
+    private volatile TreeMap<Long, InetSocketAddress> points = new TreeMap<>();
+    private volatile Set<InetSocketAddress> nodes = Collections.emptySet();
+    private transient ConcurrentHashMap<InetSocketAddress, HotKeys> hotKeys =
+        new ConcurrentHashMap<>();
+
+    /** Creates a ring over the given skeletons, with
+     <code>DEFAULT_VIRTUAL_NODES</code> points per skeleton.
+
+     @throws NullPointerException If <code>addresses</code> or any address is
+     <code>null</code>.
+     */
+    public HashRing(Collection<InetSocketAddress> addresses)
+    {
+        this(addresses, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /** Creates a ring over the given skeletons, with
+     <code>virtualNodes</code> points per skeleton.
+
+     @throws NullPointerException If <code>addresses</code> or any address is
+     <code>null</code>.
+     @throws IllegalArgumentException If <code>virtualNodes</code> is not
+     positive.
+     */
+    public HashRing(Collection<InetSocketAddress> addresses, int virtualNodes)
+    {
+        if (addresses == null) throw new NullPointerException("addresses == null");
+        if (virtualNodes <= 0) throw new IllegalArgumentException("virtualNodes <= 0");
+        this.virtualNodes = virtualNodes;
+        for (InetSocketAddress address : addresses) add(address);
+    }
+
+    /** Adds a skeleton to the ring. Has no effect if it is already present. */
+    public synchronized void add(InetSocketAddress address)
+    {
+        if (address == null) throw new NullPointerException("address == null");
+        if (nodes.contains(address)) return;
+        TreeMap<Long, InetSocketAddress> updated = new TreeMap<>(points);
+        for (int i = 0 ; i < virtualNodes ; i++) updated.putIfAbsent(pointOf(address, i), address);
+        LinkedHashSet<InetSocketAddress> members = new LinkedHashSet<>(nodes);
+        members.add(address);
+        points = updated;
+        nodes = Collections.unmodifiableSet(members);
+    }
+
+    /** Removes a skeleton from the ring. Has no effect if it is absent. */
+    public synchronized void remove(InetSocketAddress address)
+    {
+        if (!nodes.contains(address)) return;
+        TreeMap<Long, InetSocketAddress> updated = new TreeMap<>(points);
+        updated.values().removeIf(address::equals);
+        // A point of the removed skeleton may have hidden a colliding point
+        // of another skeleton.
+        for (InetSocketAddress other : nodes)
+        {
+            if (other.equals(address)) continue;
+            for (int i = 0 ; i < virtualNodes ; i++) updated.putIfAbsent(pointOf(other, i), other);
+        }
+        LinkedHashSet<InetSocketAddress> members = new LinkedHashSet<>(nodes);
+        members.remove(address);
+        points = updated;
+        nodes = Collections.unmodifiableSet(members);
+        hotKeys.remove(address);
+    }
+
+    /** Returns the skeletons currently on the ring. */
+    public Set<InetSocketAddress> nodes()
+    {
+        return nodes;
+    }
+
+    /** Returns the skeleton assigned to the given key.
+
+     @throws IllegalStateException If the ring is empty.
+     @throws IllegalArgumentException If the key cannot be serialized.
+     */
+    public InetSocketAddress locate(Object key)
+    {
+        byte[] bytes;
+        try
+        {
+            bytes = Marshal.encode(new Object[] {key});
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("shard key cannot be serialized", e);
+        }
+        TreeMap<Long, InetSocketAddress> ring = points;
+        if (ring.isEmpty()) throw new IllegalStateException("hash ring is empty");
+        Map.Entry<Long, InetSocketAddress> owner = ring.ceilingEntry(hash(bytes));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    /** Returns at most <code>n</code> of the most frequent keys recently
+     routed to the given skeleton by stubs in this process, with their
+     approximate counts, most frequent first. */
+    public Map<Object, Long> hotKeys(InetSocketAddress address, int n)
+    {
+        HotKeys keys = hotKeys.get(address);
+        return keys != null ? keys.top(n) : Collections.emptyMap();
+    }
+
+    /** Returns the skeleton assigned to the given key and counts the key
+     towards the hot keys of that skeleton. */
+    InetSocketAddress route(Object key)
+    {
+        InetSocketAddress address = locate(key);
+        hotKeys.computeIfAbsent(address, a -> new HotKeys()).record(key);
+        return address;
+    }
+
+    private static long pointOf(InetSocketAddress address, int i)
+    {
+        // Resolved addresses are placed by IP, so that clients naming the
+        // same skeleton by different host names agree on its points.
+        String host = address.isUnresolved()
+            ? address.getHostString() : address.getAddress().getHostAddress();
+        String name = host + ":" + address.getPort() + "#" + i;
+        return hash(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** 64-bit FNV-1a, followed by a finalizer spreading nearby inputs over
+     the whole ring. */
+    static long hash(byte[] bytes)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes)
+        {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        hotKeys = new ConcurrentHashMap<>();
+    }
+}
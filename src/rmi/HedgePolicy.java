@@ -0,0 +1,67 @@
+package rmi;
+
+import java.io.Serializable;
+
+/** Decides when a call to an <code>@Idempotent</code> method is hedged.
+
+ <p>
+ A hedge is a second copy of a call, sent to another skeleton when the first
+ copy has not been answered within the 95th percentile of recent latencies.
+ Hedges are paid for from a token budget: every call adds
+ <code>percent / 100</code> of a token and every hedge takes one, so that
+ hedges add at most about <code>percent</code> percent of extra load. Unused
+ tokens accumulate up to a small cap, which allows short bursts of hedging.
+ */
+class HedgePolicy implements Serializable
+{
+    /** Default budget, in percent of calls. */
+    static final double DEFAULT_PERCENT = 5;
+    private static final double MAX_TOKENS = 10;
+
+    private final double tokensPerCall;
+    private final LatencyTracker latencies = new LatencyTracker(0.95);
+    private double tokens = 0;
+    private long hedged = 0;
+
+    HedgePolicy(double percent)
+    {
+        if (percent < 0 || percent > 100)
+            throw new IllegalArgumentException("percent out of range");
+        this.tokensPerCall = percent / 100;
+    }
+
+    /** Returns the delay, in nanoseconds, after which a call should be hedged,
+     or <code>-1</code> if calls are not to be hedged yet. */
+    long delay()
+    {
+        return tokensPerCall == 0 ? -1 : latencies.percentile();
+    }
+
+    /** Records the latency of a successful call. */
+    void record(long latencyNanos)
+    {
+        latencies.record(latencyNanos);
+    }
+
+    /** Adds the budget earned by one call. */
+    synchronized void deposit()
+    {
+        tokens = Math.min(MAX_TOKENS, tokens + tokensPerCall);
+    }
+
+    /** Takes the budget for one hedge, returning <code>false</code> if the
+     budget is exhausted. */
+    synchronized boolean tryHedge()
+    {
+        if (tokens < 1) return false;
+        tokens -= 1;
+        hedged++;
+        return true;
+    }
+
+    /** Returns the number of hedges sent. */
+    synchronized long hedged()
+    {
+        return hedged;
+    }
+}
@@ -0,0 +1,99 @@
+package rmi;
+
+/** Outcome of a call that may have been sent to two skeletons.
+
+ <p>
+ The primary copy runs on the calling thread and the secondary copy, if the
+ call is hedged, on another thread. The first successful response wins and
+ the other copy is cancelled. The call fails only once every copy that was
+ started has failed, with the exception of the primary copy.
+ */
+class HedgedCall
+{
+    final PendingCall primary;
+    final PendingCall secondary;
+    private Return result;
+    private RMIException primaryFailure;
+    private boolean primaryFinished = false;
+    private boolean secondaryStarted = false;
+    private boolean secondaryFinished = false;
+
+    /** Creates a call whose copies share the given deadline. */
+    HedgedCall(long deadline)
+    {
+        this.primary = RemoteInvocationHandler.pendingCall(deadline);
+        this.secondary = RemoteInvocationHandler.pendingCall(deadline);
+    }
+
+    /** Claims the right to start the secondary copy. Returns
+     <code>false</code> if the call has already finished. */
+    synchronized boolean startSecondary()
+    {
+        if (result != null || primaryFinished) return false;
+        secondaryStarted = true;
+        return true;
+    }
+
+    /** Gives up the right to start the secondary copy, claimed with
+     <code>startSecondary</code>, when the copy is not sent after all. */
+    synchronized void secondaryRefused()
+    {
+        secondaryStarted = false;
+        notifyAll();
+    }
+
+    synchronized void primarySucceeded(Return ret)
+    {
+        primaryFinished = true;
+        if (result == null)
+        {
+            result = ret;
+            secondary.cancel();
+        }
+        notifyAll();
+    }
+
+    synchronized void primaryFailed(RMIException e)
+    {
+        primaryFinished = true;
+        primaryFailure = e;
+        notifyAll();
+    }
+
+    /** Returns <code>true</code> if the secondary copy won. */
+    synchronized boolean secondarySucceeded(Return ret)
+    {
+        secondaryFinished = true;
+        notifyAll();
+        if (result != null) return false;
+        result = ret;
+        primary.cancel();
+        return true;
+    }
+
+    synchronized void secondaryFailed()
+    {
+        secondaryFinished = true;
+        notifyAll();
+    }
+
+    /** Waits for the winning response, after the primary copy has finished. */
+    synchronized Return await() throws RMIException
+    {
+        while (result == null && secondaryStarted && !secondaryFinished)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                secondary.cancel();
+                Thread.currentThread().interrupt();
+                throw new RMIException("interrupted while waiting for hedged call", e);
+            }
+        }
+        if (result != null) return result;
+        throw primaryFailure;
+    }
+}
@@ -0,0 +1,75 @@
+package rmi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Approximate counts of the most frequent keys seen by one shard.
+
+ <p>
+ Keys are counted with the space-saving algorithm: a fixed number of
+ counters is kept, and a key without a counter takes over the smallest one,
+ inheriting its count. Any key making up more than
+ <code>1 / CAPACITY</code> of the traffic is guaranteed to hold a counter,
+ and counts are overestimated by at most the count of the replaced key.
+ All counts are halved every <code>DECAY_PERIOD</code> keys, so that the
+ report follows recent traffic.
+ */
+class HotKeys
+{
+    static final int CAPACITY = 32;
+    static final int DECAY_PERIOD = 1 << 16;
+
+    private final HashMap<Object, long[]> counters = new HashMap<>();
+    private int seen = 0;
+
+    /** Counts one call with the given key. */
+    synchronized void record(Object key)
+    {
+        if (++seen == DECAY_PERIOD)
+        {
+            seen = 0;
+            counters.values().removeIf(count -> (count[0] >>= 1) == 0);
+        }
+        long[] count = counters.get(key);
+        if (count != null)
+        {
+            count[0]++;
+            return;
+        }
+        if (counters.size() < CAPACITY)
+        {
+            counters.put(key, new long[] {1});
+            return;
+        }
+        Object smallest = null;
+        long min = Long.MAX_VALUE;
+        for (Map.Entry<Object, long[]> entry : counters.entrySet())
+        {
+            if (entry.getValue()[0] < min)
+            {
+                min = entry.getValue()[0];
+                smallest = entry.getKey();
+            }
+        }
+        counters.remove(smallest);
+        counters.put(key, new long[] {min + 1});
+    }
+
+    /** Returns at most <code>n</code> keys with their estimated counts, most
+     frequent first. */
+    synchronized Map<Object, Long> top(int n)
+    {
+        List<Map.Entry<Object, long[]>> entries = new ArrayList<>(counters.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        LinkedHashMap<Object, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<Object, long[]> entry : entries)
+        {
+            if (top.size() == n) break;
+            top.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return top;
+    }
+}
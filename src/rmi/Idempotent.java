@@ -0,0 +1,23 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks a remote interface method that may safely be executed more than
+ once, or once on behalf of several identical calls.
+
+ <p>
+ Stubs coalesce concurrent identical calls to such methods: while a call with
+ given arguments is in flight, further identical calls wait for its result
+ instead of being sent, and each receive a copy of its result or exception.
+ See <code>CallCoalescer</code>. Skeletons likewise
+ coalesce identical invocations received from different clients; see
+ <code>InvocationCoalescer</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent
+{
+}
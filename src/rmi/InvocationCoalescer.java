@@ -0,0 +1,133 @@
+package rmi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Skeleton-side coalescing of identical invocations of
+ <code>@Idempotent</code> methods.
+
+ <p>
+ While the server object is executing a call with given method and argument
+ bytes, identical calls received from any client wait for that invocation and
+ are answered with its result, or its exception, instead of calling the server
+ object again. This protects expensive methods from thundering herds of
+ clients asking for the same value at once.
+
+ <p>
+ Only the outcome of the invocation itself is shared. If the call leading
+ the invocation is cancelled, or its deadline passes, before the invocation
+ completes, the calls waiting for it are not failed: one of them invokes the
+ server object again in its place.
+ */
+public class InvocationCoalescer
+{
+    private final ConcurrentHashMap<ArgumentKey, CompletableFuture<Object>> inFlight =
+        new ConcurrentHashMap<>();
+    private final LongAdder invoked = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /** Outcome given to waiting calls when the leading call was abandoned,
+     telling them to try again. */
+    private static final Object ABANDONED = new Object();
+
+    InvocationCoalescer() {}
+
+    /** Returns the number of calls that invoked the server object. */
+    public long invoked()
+    {
+        return invoked.sum();
+    }
+
+    /** Returns the number of calls answered with the result of an identical
+     invocation already in progress. */
+    public long coalesced()
+    {
+        return coalesced.sum();
+    }
+
+    /** Invokes the server object, or waits for an identical invocation already
+     in progress. <code>leader</code> is the running call on whose behalf the
+     server object would be invoked, or <code>null</code> if it cannot be
+     cancelled. */
+    Object call(ArgumentKey key, ServerCall call, RunningCall leader)
+        throws ReflectiveOperationException, IOException
+    {
+        while (true)
+        {
+            CompletableFuture<Object> pending = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, pending);
+            if (existing == null) return lead(key, call, leader, pending);
+            coalesced.increment();
+            Object result = await(existing);
+            if (result != ABANDONED) return result;
+        }
+    }
+
+    /** Invokes the server object for all the calls waiting on
+     <code>pending</code>. */
+    private Object lead(ArgumentKey key, ServerCall call, RunningCall leader,
+                        CompletableFuture<Object> pending)
+        throws ReflectiveOperationException, IOException
+    {
+        invoked.increment();
+        try
+        {
+            Object result = call.invoke();
+            inFlight.remove(key, pending);
+            pending.complete(result);
+            return result;
+        }
+        catch (ReflectiveOperationException | IOException | RuntimeException e)
+        {
+            inFlight.remove(key, pending);
+            if (abandoned(e, leader)) pending.complete(ABANDONED);
+            else pending.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            // Errors abandon the invocation as well.
+            if (!pending.isDone())
+            {
+                inFlight.remove(key, pending);
+                pending.complete(ABANDONED);
+            }
+        }
+    }
+
+    /** Returns <code>true</code> if an invocation failed because its leading
+     call was cancelled or expired, rather than with an outcome of its
+     own. */
+    private static boolean abandoned(Exception e, RunningCall leader)
+    {
+        return e instanceof InterruptedIOException
+            || (leader != null && leader.isInterrupted());
+    }
+
+    private static Object await(CompletableFuture<Object> pending)
+        throws ReflectiveOperationException, IOException
+    {
+        try
+        {
+            return pending.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for coalesced invocation", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof ReflectiveOperationException)
+                throw (ReflectiveOperationException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
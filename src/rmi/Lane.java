@@ -0,0 +1,19 @@
+package rmi;
+
+/** Priority lanes in which skeletons queue calls waiting to be invoked,
+ from the most to the least urgent.
+
+ @see Priority
+ @see Dispatcher
+ */
+public enum Lane
+{
+    /** Health checks and control-plane calls. */
+    CRITICAL,
+    /** Latency-sensitive calls, such as those made on behalf of users. */
+    HIGH,
+    /** Calls without a priority. */
+    NORMAL,
+    /** Background and batch calls. */
+    LOW
+}
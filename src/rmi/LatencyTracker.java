@@ -0,0 +1,51 @@
+package rmi;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/** Tracks a percentile of recent call latencies.
+
+ <p>
+ The latencies of the last <code>WINDOW</code> calls are kept in a ring. The
+ percentile is recomputed from the ring every <code>RECOMPUTE_EVERY</code>
+ samples, so that reading it costs nothing on the call path.
+ */
+class LatencyTracker implements Serializable
+{
+    static final int WINDOW = 1024;
+    static final int MIN_SAMPLES = 32;
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final double quantile;
+    private final long[] samples = new long[WINDOW];
+    private long count = 0;
+    private volatile long percentile = -1;
+
+    /** Creates a tracker of the given quantile, between 0 and 1. */
+    LatencyTracker(double quantile)
+    {
+        if (quantile <= 0 || quantile >= 1)
+            throw new IllegalArgumentException("quantile out of range");
+        this.quantile = quantile;
+    }
+
+    synchronized void record(long latencyNanos)
+    {
+        samples[(int) (count % WINDOW)] = latencyNanos;
+        count++;
+        if (count == MIN_SAMPLES || (count > MIN_SAMPLES && count % RECOMPUTE_EVERY == 0))
+        {
+            int n = (int) Math.min(count, WINDOW);
+            long[] sorted = Arrays.copyOf(samples, n);
+            Arrays.sort(sorted);
+            percentile = sorted[Math.min(n - 1, (int) (quantile * n))];
+        }
+    }
+
+    /** Returns the tracked percentile in nanoseconds, or <code>-1</code> if
+     fewer than <code>MIN_SAMPLES</code> latencies have been recorded. */
+    long percentile()
+    {
+        return percentile;
+    }
+}
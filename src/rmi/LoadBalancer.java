@@ -0,0 +1,96 @@
+package rmi;
+
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Chooses among equivalent skeletons using the power of two choices.
+
+ <p>
+ For each call two distinct endpoints that are not ejected are drawn at
+ random, and the one with the lower estimated cost is used. The cost combines
+ the latency estimate of the endpoint with the calls this client has in flight
+ to it and the load hint last reported by its skeleton. Comparing only two
+ random endpoints keeps the choice cheap while avoiding the herding that comes
+ from always picking the single least loaded endpoint.
+
+ <p>
+ If every endpoint is ejected, the one whose ejection ends first is used, so
+ that calls are never refused by the balancer itself.
+ */
+class LoadBalancer implements Serializable
+{
+    private final Endpoint[] endpoints;
+
+    LoadBalancer(Collection<InetSocketAddress> addresses)
+    {
+        if (addresses == null) throw new NullPointerException("addresses == null");
+        LinkedHashSet<InetSocketAddress> distinct = new LinkedHashSet<>(addresses);
+        if (distinct.isEmpty()) throw new IllegalArgumentException("no addresses");
+        this.endpoints = new Endpoint[distinct.size()];
+        int i = 0;
+        for (InetSocketAddress address : distinct)
+        {
+            if (address == null) throw new NullPointerException("address == null");
+            endpoints[i++] = new Endpoint(address);
+        }
+    }
+
+    Endpoint[] endpoints()
+    {
+        return endpoints;
+    }
+
+    /** Chooses the endpoint for the next call. */
+    Endpoint choose()
+    {
+        return choose(null);
+    }
+
+    /** Chooses the endpoint for the next call, avoiding <code>excluded</code>
+     if any other endpoint is available. */
+    Endpoint choose(Endpoint excluded)
+    {
+        long now = System.currentTimeMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Endpoint first = null;
+        Endpoint second = null;
+        int available = 0;
+        // Reservoir-sample two distinct available endpoints in one pass.
+        for (Endpoint endpoint : endpoints)
+        {
+            if (endpoint == excluded || endpoint.isEjected(now)) continue;
+            available++;
+            if (first == null)
+            {
+                first = endpoint;
+            }
+            else if (second == null)
+            {
+                second = endpoint;
+            }
+            else if (random.nextInt(available) < 2)
+            {
+                if (random.nextBoolean()) first = endpoint;
+                else second = endpoint;
+            }
+        }
+        if (first == null) return leastEjected(excluded);
+        if (second == null) return first;
+        return second.cost() < first.cost() ? second : first;
+    }
+
+    private Endpoint leastEjected(Endpoint excluded)
+    {
+        Endpoint best = null;
+        for (Endpoint endpoint : endpoints)
+        {
+            if (endpoint == excluded && endpoints.length > 1) continue;
+            if (best == null || endpoint.ejectedUntil() < best.ejectedUntil())
+                best = endpoint;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,248 @@
+package rmi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/** Mailbox of a skeleton running its server object as an actor.
+
+ <p>
+ Service threads post the invocations they receive to the mailbox and wait
+ for their results; a single dedicated thread takes the invocations in
+ batches of up to <code>maxBatch</code> and runs them one after the other,
+ in the order they were posted. The server object is thus only ever called
+ from one thread, and needs no locking of its own.
+
+ <p>
+ The mailbox is a lock-free multiple-producer, single-consumer linked queue:
+ posting an invocation swaps it in as the new tail with a single atomic
+ operation, and only the actor thread reads from the head. The actor thread
+ parks when the mailbox is empty and is woken by the next post.
+
+ <p>
+ An invocation whose service thread stops waiting for it, because the call
+ was cancelled or its deadline passed, is skipped if it has not started; an
+ invocation that has started runs to completion.
+ */
+public class Mailbox
+{
+    /** Default maximum number of invocations taken in one batch. */
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    private final AtomicReference<Node> tail;
+    private Node head;
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Thread actor;
+    private volatile boolean parked = false;
+    private volatile boolean closed = false;
+    private volatile int maxBatch = DEFAULT_MAX_BATCH;
+    private volatile long processed = 0;
+    private volatile long batches = 0;
+    private volatile int lastBatch = 0;
+
+    /** Invocation posted to the mailbox, with its outcome. */
+    private static class Envelope
+    {
+        static final int POSTED = 0;
+        static final int RUNNING = 1;
+        static final int ABANDONED = 2;
+        static final int DONE = 3;
+
+        final ServerCall call;
+        final Thread waiter = Thread.currentThread();
+        final AtomicInteger state = new AtomicInteger(POSTED);
+        Object result;
+        Throwable failure;
+
+        Envelope(ServerCall call)
+        {
+            this.call = call;
+        }
+    }
+
+    private static class Node
+    {
+        volatile Node next;
+        Envelope envelope;
+
+        Node(Envelope envelope)
+        {
+            this.envelope = envelope;
+        }
+    }
+
+    /** Creates a mailbox and starts its actor thread. */
+    Mailbox(String name)
+    {
+        head = new Node(null);
+        tail = new AtomicReference<>(head);
+        actor = new Thread(this::run, name);
+        actor.setDaemon(true);
+        actor.start();
+    }
+
+    /** Sets the maximum number of invocations taken in one batch.
+
+     @throws IllegalArgumentException If <code>maxBatch</code> is not
+     positive.
+     */
+    public void setMaxBatch(int maxBatch)
+    {
+        if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch <= 0");
+        this.maxBatch = maxBatch;
+    }
+
+    /** Returns the maximum number of invocations taken in one batch. */
+    public int getMaxBatch()
+    {
+        return maxBatch;
+    }
+
+    /** Returns the number of invocations waiting in the mailbox. */
+    public int depth()
+    {
+        return depth.get();
+    }
+
+    /** Returns the number of invocations taken from the mailbox. */
+    public long processed()
+    {
+        return processed;
+    }
+
+    /** Returns the number of batches taken from the mailbox. */
+    public long batches()
+    {
+        return batches;
+    }
+
+    /** Returns the size of the last batch taken from the mailbox. */
+    public int lastBatchSize()
+    {
+        return lastBatch;
+    }
+
+    /** Returns the mean size of the batches taken from the mailbox. */
+    public double meanBatchSize()
+    {
+        long count = batches;
+        return count == 0 ? 0 : (double) processed / count;
+    }
+
+    /** Runs a call on the actor thread and returns its result.
+
+     @throws InterruptedIOException If the calling thread is interrupted
+     while waiting; the call is then skipped
+     if it has not started.
+     */
+    Object call(ServerCall call) throws ReflectiveOperationException, IOException
+    {
+        if (closed) throw new IOException("mailbox closed");
+        Envelope envelope = new Envelope(call);
+        Node node = new Node(envelope);
+        tail.getAndSet(node).next = node;
+        depth.incrementAndGet();
+        if (parked) LockSupport.unpark(actor);
+
+        boolean[] interrupted = {false};
+        try
+        {
+            Blocking.await(() -> {
+                while (envelope.state.get() != Envelope.DONE)
+                {
+                    LockSupport.park(this);
+                    if (!Thread.interrupted()) continue;
+                    interrupted[0] = true;
+                    if (envelope.state.compareAndSet(Envelope.POSTED, Envelope.ABANDONED))
+                        throw new InterruptedException();
+                }
+            });
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("call abandoned in mailbox");
+        }
+        if (interrupted[0]) Thread.currentThread().interrupt();
+        Throwable failure = envelope.failure;
+        if (failure == null) return envelope.result;
+        if (failure instanceof ReflectiveOperationException)
+            throw (ReflectiveOperationException) failure;
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        throw (Error) failure;
+    }
+
+    /** Stops the actor thread once the invocations already posted have been
+     run. */
+    void close()
+    {
+        closed = true;
+        LockSupport.unpark(actor);
+    }
+
+    /** Waits for the actor thread to stop after <code>close</code>. */
+    void join() throws InterruptedException
+    {
+        actor.join();
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            int batch = 0;
+            int limit = maxBatch;
+            while (batch < limit)
+            {
+                Envelope envelope = poll();
+                if (envelope == null) break;
+                batch++;
+                processed++;
+                execute(envelope);
+            }
+            if (batch > 0)
+            {
+                lastBatch = batch;
+                batches++;
+                continue;
+            }
+            if (closed && depth.get() == 0) return;
+            parked = true;
+            if (depth.get() == 0 && !closed) LockSupport.park(this);
+            parked = false;
+        }
+    }
+
+    /** Takes the invocation at the head of the mailbox, or returns
+     <code>null</code> if it is empty. */
+    private Envelope poll()
+    {
+        if (depth.get() == 0) return null;
+        Node next;
+        // A producer may have swapped in its node without linking it yet.
+        while ((next = head.next) == null) Thread.onSpinWait();
+        head = next;
+        Envelope envelope = next.envelope;
+        next.envelope = null;
+        depth.decrementAndGet();
+        return envelope;
+    }
+
+    private static void execute(Envelope envelope)
+    {
+        if (!envelope.state.compareAndSet(Envelope.POSTED, Envelope.RUNNING)) return;
+        try
+        {
+            envelope.result = envelope.call.invoke();
+        }
+        catch (Throwable t)
+        {
+            envelope.failure = t;
+        }
+        envelope.state.set(Envelope.DONE);
+        LockSupport.unpark(envelope.waiter);
+    }
+}
@@ -0,0 +1,110 @@
+package rmi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/** Encoding of call arguments and results to and from bytes.
+
+ <p>
+ Arguments travel inside the <code>Shuttle</code> as an encoded array, so
+ that the skeleton can look a call up by its argument bytes before, or
+ instead of, decoding them.
+ */
+class Marshal
+{
+    private Marshal() {}
+
+    /** Encodes the arguments of a call, or returns <code>null</code> if there
+     are none. */
+    static byte[] encode(Object[] args) throws IOException
+    {
+        if (args == null || args.length == 0) return null;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes))
+        {
+            oos.writeObject(args);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Decodes arguments encoded with <code>encode</code>. */
+    static Object[] decode(byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        if (bytes == null) return new Object[0];
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+        {
+            return (Object[]) ois.readObject();
+        }
+    }
+
+    /** Returns a copy of <code>value</code> made by serializing it, so that
+     callers sharing a result do not share its mutable state. Immutable
+     values, and values which cannot be serialized, are returned as they
+     are. */
+    @SuppressWarnings("unchecked")
+    static <V> V copy(V value)
+    {
+        if (value == null || value instanceof String || value instanceof Boolean
+            || value instanceof Character || value instanceof Integer
+            || value instanceof Long || value instanceof Double || value instanceof Float
+            || value instanceof Short || value instanceof Byte || value instanceof Enum)
+        {
+            return value;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try
+        {
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes))
+            {
+                oos.writeObject(value);
+            }
+            try (ObjectInputStream ois =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+            {
+                return (V) ois.readObject();
+            }
+        }
+        catch (IOException | ClassNotFoundException e)
+        {
+            return value;
+        }
+    }
+
+    /** Returns the number of bytes taken by the serialized form of
+     <code>value</code>, or <code>0</code> if it cannot be serialized. */
+    static int sizeOf(Object value)
+    {
+        if (value == null) return 0;
+        CountingOutputStream counter = new CountingOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(counter))
+        {
+            oos.writeObject(value);
+        }
+        catch (IOException e)
+        {
+            return 0;
+        }
+        return counter.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream
+    {
+        int count = 0;
+
+        @Override
+        public void write(int b)
+        {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package rmi;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Skeleton-side cache of the results of <code>@Deterministic</code> methods.
+
+ <p>
+ Entries are keyed by the method and the encoded bytes of its arguments, and
+ the cache is bounded by a byte budget covering the argument bytes and the
+ serialized size of each result. The least recently used entries are evicted
+ first. Exceptions are never cached. For methods returning a future, the
+ value the future completes with is cached, once it completes successfully,
+ and later calls are answered with a completed future.
+
+ <p>
+ Entries never expire on their own. The server object invalidates them
+ through the methods of this class when the results would change.
+ */
+public class MemoCache
+{
+    /** Default budget, in bytes, of the cache of each skeleton. */
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final Object NULL = new Object();
+
+    private final LinkedHashMap<ArgumentKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong generation = new AtomicLong();
+    private long maxBytes;
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    MemoCache(long maxBytes)
+    {
+        setMaxBytes(maxBytes);
+    }
+
+    /** Sets the byte budget, evicting entries if the cache is over it.
+
+     @throws IllegalArgumentException If <code>maxBytes</code> is negative.
+     */
+    public synchronized void setMaxBytes(long maxBytes)
+    {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes < 0");
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /** Removes all memoized results. */
+    public synchronized void invalidate()
+    {
+        generation.incrementAndGet();
+        entries.clear();
+        bytes = 0;
+    }
+
+    /** Removes the memoized results of all methods with the given name. */
+    public synchronized void invalidate(String methodName)
+    {
+        generation.incrementAndGet();
+        Iterator<Map.Entry<ArgumentKey, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<ArgumentKey, Entry> entry = iterator.next();
+            if (entry.getKey().method.getName().equals(methodName))
+            {
+                bytes -= entry.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /** Returns the number of calls answered from the cache. */
+    public synchronized long hits()
+    {
+        return hits;
+    }
+
+    /** Returns the number of calls to memoized methods not found in the
+     cache. */
+    public synchronized long misses()
+    {
+        return misses;
+    }
+
+    /** Returns the estimated number of bytes taken by the cached entries. */
+    public synchronized long size()
+    {
+        return bytes;
+    }
+
+    /** Performs a call through the cache.
+
+     <p>
+     If a result is cached for the key it is returned without running
+     <code>call</code>. Otherwise <code>call</code> is run and, if it returns
+     normally and no invalidation happened meanwhile, its result is cached.
+     */
+    Object call(ArgumentKey key, ServerCall call)
+        throws ReflectiveOperationException, IOException
+    {
+        long started;
+        synchronized (this)
+        {
+            Entry entry = entries.get(key);
+            if (entry != null)
+            {
+                hits++;
+                return entry.value == NULL ? null : entry.value;
+            }
+            misses++;
+            started = generation.get();
+        }
+        Object value = call.invoke();
+        store(key, started, value);
+        return value;
+    }
+
+    /** Performs a call of a method returning a future through the cache.
+
+     <p>
+     If a value is cached for the key, a future completed with it is returned
+     without running <code>call</code>. Otherwise the future returned by
+     <code>call</code> is returned, and the value it completes with is cached
+     if it completes successfully and no invalidation happened meanwhile.
+     */
+    Object callAsync(ArgumentKey key, ServerCall call)
+        throws ReflectiveOperationException, IOException
+    {
+        long started;
+        synchronized (this)
+        {
+            Entry entry = entries.get(key);
+            if (entry != null)
+            {
+                hits++;
+                return CompletableFuture.completedFuture(entry.value == NULL ? null : entry.value);
+            }
+            misses++;
+            started = generation.get();
+        }
+        Object stage = call.invoke();
+        if (stage instanceof CompletionStage)
+        {
+            ((CompletionStage<?>) stage).whenComplete((value, failure) -> {
+                if (failure == null) store(key, started, value);
+            });
+        }
+        return stage;
+    }
+
+    /** Caches a value computed for a key, unless the cache was invalidated
+     since the computation started at generation <code>started</code>. */
+    private void store(ArgumentKey key, long started, Object value)
+    {
+        int weight = ENTRY_OVERHEAD + key.weight() + Marshal.sizeOf(value);
+        synchronized (this)
+        {
+            if (generation.get() == started && weight <= maxBytes)
+            {
+                Entry old = entries.put(key, new Entry(value == null ? NULL : value, weight));
+                if (old != null) bytes -= old.weight;
+                bytes += weight;
+                evict();
+            }
+        }
+    }
+
+    private void evict()
+    {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext())
+        {
+            bytes -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    private static class Entry
+    {
+        final Object value;
+        final int weight;
+
+        Entry(Object value, int weight)
+        {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
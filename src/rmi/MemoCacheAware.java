@@ -0,0 +1,14 @@
+package rmi;
+
+/** Implemented by server objects that invalidate the memoized results of
+ their <code>@Deterministic</code> methods.
+
+ <p>
+ When a <code>Skeleton</code> is created for a server object implementing
+ this interface, it passes the object its <code>MemoCache</code>.
+ */
+public interface MemoCacheAware
+{
+    /** Gives the server object the memoization cache of its skeleton. */
+    void setMemoCache(MemoCache cache);
+}
@@ -0,0 +1,78 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+
+/** Invocation handler for stubs bound to a registry name.
+
+ <p>
+ The address of the skeleton is resolved through a <code>RegistryClient</code>
+ before each call. If the resolved skeleton refuses the connection, the call
+ has not been sent, so the entry is dropped and the call is retried once on
+ the freshly resolved address.
+ */
+class NamedInvocationHandler<T> extends RemoteInvocationHandler<T>
+{
+    private final RegistryClient registry;
+    private final String name;
+
+    NamedInvocationHandler(Class<T> c, RegistryClient registry, String name)
+    {
+        super(c);
+        this.registry = registry;
+        this.name = name;
+    }
+
+    @Override
+    InetSocketAddress endpoint(Method m, Object[] args) throws RMIException
+    {
+        return registry.resolve(name);
+    }
+
+    @Override
+    Object call(Method m, Object[] args) throws Throwable
+    {
+        InetSocketAddress address = registry.resolve(name);
+        try
+        {
+            return callAt(address, m, args);
+        }
+        catch (RMIException e)
+        {
+            if (!isConnectFailure(e)) throw e;
+            registry.invalidate(name, address);
+            InetSocketAddress resolved = registry.resolve(name);
+            if (resolved.equals(address)) throw e;
+            return callAt(resolved, m, args);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return c.getName() + " @ " + name;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == null) return false;
+        try
+        {
+            Object handler = ROR.getInvocationHandler(obj);
+            if (!(handler instanceof NamedInvocationHandler)) return false;
+            NamedInvocationHandler other = (NamedInvocationHandler) handler;
+            return c == other.c && name.equals(other.name);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return toString().hashCode();
+    }
+}
@@ -0,0 +1,24 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks the parameter of a remote interface method which identifies the
+ entity the call operates on.
+
+ <p>
+ Skeletons run the calls of such methods on one of several partition
+ threads, chosen by the hash of the key's serialized form, so that keys
+ need not override <code>hashCode</code>. Calls with equal keys therefore
+ run one at a time, in the order they were received, while calls with
+ different keys run in parallel. The server object need only be safe for
+ concurrent calls on different keys; concurrency modes declared for these
+ methods are ignored. See <code>Skeleton.setPartitions</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface PartitionKey
+{
+}
@@ -0,0 +1,170 @@
+package rmi;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Handle on a call in flight, through which the call can be cancelled or
+ expired.
+
+ <p>
+ Cancelling or expiring a call closes its connection, which makes the thread
+ waiting for the response fail with an <code>RMIException</code>. A call
+ cancelled before its connection is opened fails as soon as it is. When a
+ call that has been sent is cancelled, the skeleton is also told to interrupt
+ the invocation; an expired call needs no such message, since the skeleton
+ enforces the same deadline itself.
+
+ <p>
+ Calls can be linked to a call which stands for them all, such as the call
+ of a future returned to the caller, so that cancelling that call cancels
+ each of them.
+ */
+class PendingCall
+{
+    private static final ExecutorService cancellations =
+        Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-cancel");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    /** Deadline, as a <code>System.nanoTime</code> value, or
+     <code>CallContext.NO_DEADLINE</code>. */
+    final long deadline;
+    private Socket socket;
+    private InetSocketAddress address;
+    private long callId;
+    private boolean cancelled = false;
+    private boolean expired = false;
+    /** Calls cancelled along with this one. */
+    private List<PendingCall> linked;
+
+    PendingCall()
+    {
+        this(CallContext.NO_DEADLINE);
+    }
+
+    PendingCall(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    /** Returns the time left before the deadline, in nanoseconds, or
+     <code>CallContext.NO_DEADLINE</code>. */
+    long remainingNanos()
+    {
+        return deadline == CallContext.NO_DEADLINE
+            ? CallContext.NO_DEADLINE
+            : deadline - System.nanoTime();
+    }
+
+    /** Associates the call with its connection. Returns <code>false</code>,
+     after closing the connection, if the call has already been cancelled or
+     has expired. */
+    synchronized boolean attach(Socket socket, InetSocketAddress address, long callId)
+    {
+        if (cancelled)
+        {
+            close(socket);
+            return false;
+        }
+        this.socket = socket;
+        this.address = address;
+        this.callId = callId;
+        return true;
+    }
+
+    /** Makes cancelling this call cancel <code>other</code> too, at once if
+     this call has already been cancelled. A call which expires does not
+     cancel the calls linked to it, which have deadlines of their own. */
+    void link(PendingCall other)
+    {
+        synchronized (this)
+        {
+            if (expired) return;
+            if (!cancelled)
+            {
+                if (linked == null) linked = new ArrayList<>();
+                linked.add(other);
+                return;
+            }
+        }
+        other.cancel();
+    }
+
+    /** Cancels the call, and the calls linked to it. Has no effect on a call
+     that has completed. */
+    void cancel()
+    {
+        InetSocketAddress notify;
+        long id;
+        List<PendingCall> others;
+        synchronized (this)
+        {
+            if (cancelled) return;
+            cancelled = true;
+            others = linked;
+            linked = null;
+            notify = address;
+            id = callId;
+            if (socket != null) close(socket);
+        }
+        if (others != null)
+        {
+            for (PendingCall other : others) other.cancel();
+        }
+        if (notify != null) cancellations.execute(() -> sendCancel(notify, id));
+    }
+
+    /** Fails the call because its deadline has passed. */
+    synchronized void expire()
+    {
+        if (cancelled) return;
+        cancelled = true;
+        expired = true;
+        linked = null;
+        if (socket != null) close(socket);
+    }
+
+    synchronized boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    synchronized boolean isExpired()
+    {
+        return expired;
+    }
+
+    private static void sendCancel(InetSocketAddress address, long callId)
+    {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort()))
+        {
+            ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
+            oos.writeObject(Shuttle.cancel(callId));
+            oos.flush();
+        }
+        catch (IOException e)
+        {
+            // The skeleton is gone, and with it the invocation.
+        }
+    }
+
+    private static void close(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            // Nothing more can be done for a connection being abandoned.
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Gives the calls of a remote interface method a priority lane.
+
+ <p>
+ When the skeleton is running as many invocations as its
+ <code>Dispatcher</code> allows, waiting calls are started in lane order. A
+ lane set by the client for a call with <code>CallContext</code> takes
+ precedence. Methods without this annotation use <code>Lane.NORMAL</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Priority
+{
+    /** Lane in which calls of the method wait. */
+    Lane value();
+}
@@ -0,0 +1,24 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks a remote interface method that does not modify the state of the
+ server object.
+
+ <p>
+ Stubs created with <code>Stub.createReplicated</code> send calls to such
+ methods to the replicas, and all other calls to the primary.
+
+ <p>
+ Skeletons invoke such methods under a shared lock: they run concurrently
+ with each other, but not with methods marked <code>@Exclusive</code>. The
+ annotation may also be placed on a method of the server object's class.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadOnly
+{
+}
@@ -0,0 +1,48 @@
+package rmi;
+
+import java.net.InetSocketAddress;
+
+/** Remote interface of the naming registry.
+
+ <p>
+ The registry maps service names to the addresses of the skeletons providing
+ those services. It is itself exported with an ordinary <code>Skeleton</code>
+ at a well-known address, so that clients only need to know that one address
+ to bootstrap RMI. Clients should normally go through a
+ <code>RegistryClient</code>, which caches the results of
+ <code>lookup</code>.
+ */
+public interface Registry
+{
+    /** Binds a name to a skeleton address.
+
+     @throws RMIException If the name is already bound, or if the call cannot
+     be completed.
+     */
+    void bind(String name, InetSocketAddress address) throws RMIException;
+
+    /** Binds a name to a skeleton address, replacing any existing binding.
+
+     @throws RMIException If the call cannot be completed.
+     */
+    void rebind(String name, InetSocketAddress address) throws RMIException;
+
+    /** Removes the binding for a name, if there is one.
+
+     @throws RMIException If the call cannot be completed.
+     */
+    void unbind(String name) throws RMIException;
+
+    /** Returns the address bound to a name, or <code>null</code> if the name
+     is not bound.
+
+     @throws RMIException If the call cannot be completed.
+     */
+    InetSocketAddress lookup(String name) throws RMIException;
+
+    /** Returns the names currently bound in the registry.
+
+     @throws RMIException If the call cannot be completed.
+     */
+    String[] list() throws RMIException;
+}
@@ -0,0 +1,159 @@
+package rmi;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Client of the naming registry with a local lookup cache.
+
+ <p>
+ Resolved addresses are cached for a fixed time to live. A cache hit does no
+ network I/O, so <code>resolve</code> may be called on every remote call. Once
+ an entry has been cached for three quarters of its time to live, the next hit
+ starts a refresh in the background and keeps returning the cached address
+ until the refresh completes. Entries older than the time to live are
+ resolved again synchronously.
+
+ <p>
+ Stubs created with <code>create</code> are bound to a name rather than to an
+ address. They resolve the name through this client before each call, and if
+ the cached skeleton refuses the connection, they drop the entry, resolve the
+ name again and retry the call once on the new address.
+ */
+public class RegistryClient implements Serializable
+{
+    private static final ExecutorService refresher =
+        Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "registry-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final Registry registry;
+    private final long ttlNanos;
+    private transient ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /** Creates a registry client.
+
+     @param registry A stub for the registry.
+     @param ttlMillis Time, in milliseconds, for which a resolved address is
+     cached.
+     @throws NullPointerException If <code>registry</code> is
+     <code>null</code>.
+     @throws IllegalArgumentException If <code>ttlMillis</code> is not
+     positive.
+     */
+    public RegistryClient(Registry registry, long ttlMillis)
+    {
+        if (registry == null) throw new NullPointerException("registry == null");
+        if (ttlMillis <= 0) throw new IllegalArgumentException("ttlMillis <= 0");
+        this.registry = registry;
+        this.ttlNanos = ttlMillis * 1000000L;
+    }
+
+    /** Returns the address bound to a name, from the cache if possible.
+
+     @throws RMIException If the name is not bound, or if the registry cannot
+     be contacted and no fresh entry is cached.
+     */
+    public InetSocketAddress resolve(String name) throws RMIException
+    {
+        if (name == null) throw new NullPointerException("name == null");
+        Entry entry = cache.get(name);
+        if (entry != null)
+        {
+            long age = System.nanoTime() - entry.loaded;
+            if (age < ttlNanos)
+            {
+                if (age >= ttlNanos - ttlNanos / 4 && entry.refreshing.compareAndSet(false, true))
+                    refresh(name, entry);
+                return entry.address;
+            }
+        }
+        return load(name);
+    }
+
+    /** Removes the cached entry for a name, so that the next
+     <code>resolve</code> contacts the registry. */
+    public void invalidate(String name)
+    {
+        cache.remove(name);
+    }
+
+    /** Removes the cached entry for a name only if it still holds the given
+     address. */
+    void invalidate(String name, InetSocketAddress address)
+    {
+        Entry entry = cache.get(name);
+        if (entry != null && entry.address.equals(address)) cache.remove(name, entry);
+    }
+
+    /** Creates a stub for the service bound to a name.
+
+     <p>
+     The name is resolved on every call, through the cache. Two such stubs
+     are equal if they implement the same interface and are bound to the same
+     name.
+
+     @throws NullPointerException If any argument is <code>null</code>.
+     @throws Error If <code>c</code> does not represent a remote interface.
+     */
+    public <T> T create(Class<T> c, String name)
+    {
+        if (c == null) throw new NullPointerException("c == null");
+        if (name == null) throw new NullPointerException("name == null");
+        return Stub.createWithHandler(c, new NamedInvocationHandler<>(c, this, name));
+    }
+
+    private InetSocketAddress load(String name) throws RMIException
+    {
+        InetSocketAddress address = registry.lookup(name);
+        if (address == null)
+        {
+            cache.remove(name);
+            throw new RMIException("name not bound: " + name);
+        }
+        cache.put(name, new Entry(address, System.nanoTime()));
+        return address;
+    }
+
+    private void refresh(String name, Entry entry)
+    {
+        refresher.execute(() -> {
+            try
+            {
+                load(name);
+            }
+            catch (RMIException e)
+            {
+                // Keep serving the old entry until it expires.
+                entry.refreshing.set(false);
+            }
+        });
+    }
+
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        this.cache = new ConcurrentHashMap<>();
+    }
+
+    private static class Entry
+    {
+        final InetSocketAddress address;
+        final long loaded;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(InetSocketAddress address, long loaded)
+        {
+            this.address = address;
+            this.loaded = loaded;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package rmi;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Server-side implementation of the naming registry.
+
+ <p>
+ Instances are exported with a <code>Skeleton&lt;Registry&gt;</code>. The
+ bindings are kept in memory only.
+ */
+public class RegistryServer implements Registry
+{
+    private final ConcurrentHashMap<String, InetSocketAddress> bindings =
+        new ConcurrentHashMap<>();
+
+    @Override
+    public void bind(String name, InetSocketAddress address) throws RMIException
+    {
+        if (name == null) throw new NullPointerException("name == null");
+        if (address == null) throw new NullPointerException("address == null");
+        if (bindings.putIfAbsent(name, address) != null)
+            throw new RMIException("name already bound: " + name);
+    }
+
+    @Override
+    public void rebind(String name, InetSocketAddress address) throws RMIException
+    {
+        if (name == null) throw new NullPointerException("name == null");
+        if (address == null) throw new NullPointerException("address == null");
+        bindings.put(name, address);
+    }
+
+    @Override
+    public void unbind(String name) throws RMIException
+    {
+        if (name == null) throw new NullPointerException("name == null");
+        bindings.remove(name);
+    }
+
+    @Override
+    public InetSocketAddress lookup(String name) throws RMIException
+    {
+        if (name == null) throw new NullPointerException("name == null");
+        return bindings.get(name);
+    }
+
+    @Override
+    public String[] list() throws RMIException
+    {
+        return bindings.keySet().toArray(new String[0]);
+    }
+}
@@ -0,0 +1,26 @@
+package rmi;
+
+/** Thrown when a skeleton refuses a call without invoking it: because its
+ client has exceeded the call rate allowed to it, because the bulkhead of its
+ method is full, or because it waited in a queue past the target delay and
+ was shed. The call may be retried after the time given by
+ <code>getRetryAfterMillis</code>. */
+public class RejectedCallException extends RMIException
+{
+    private final long retryAfterMillis;
+
+    /** Creates a <code>RejectedCallException</code> with the given message
+        string and retry hint. */
+    public RejectedCallException(String message, long retryAfterMillis)
+    {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** Returns the time, in milliseconds, after which the client may retry
+        the call. */
+    public long getRetryAfterMillis()
+    {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,8 @@
+package rmi;
+
+/** A remote call whose result may be shared, as by the client-side result
+ cache or by coalesced calls. */
+interface RemoteCall
+{
+    Object perform() throws Throwable;
+}
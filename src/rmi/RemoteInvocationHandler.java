@@ -8,16 +8,34 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
-import java.net.InetAddress;
+import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by bharatbatra on 2/5/17.
  */
 public class RemoteInvocationHandler<T> implements InvocationHandler, Serializable
 {
+    private static final ExecutorService asyncExecutor =
+        Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    /** Call of the future the current thread is completing for
+     <code>performAsync</code>, which cancels the calls the thread sends when
+     the future is cancelled. */
+    private static final ThreadLocal<PendingCall> asyncCall = new ThreadLocal<>();
+
     InetSocketAddress socketAddress;
     Class<T> c;
     Skeleton<T> skeleton;
@@ -31,6 +49,14 @@ public class RemoteInvocationHandler<T> implements InvocationHandler, Serializab
         this.socketAddress = socketAddress;
     }
 
+    /** Creates a handler without a fixed address, for subclasses which
+     resolve the address of each call themselves. */
+    RemoteInvocationHandler(Class<T> c)
+    {
+        if (c == null) throw new NullPointerException("class is null");
+        this.c = c;
+    }
+
     public Object invoke(Object proxy, Method m, Object[] args)
         throws Throwable {
         System.out.println("method: " + m.toString());
@@ -46,57 +72,214 @@ public class RemoteInvocationHandler<T> implements InvocationHandler, Serializab
                 case "hashCode": return this.hashCode();
             }
         }
-        Socket socket = null;
+        if (CompletionStage.class.isAssignableFrom(m.getReturnType()))
+            return performAsync(m, args);
+        return perform(m, args);
+    }
+
+    /** Performs a call, going through the result cache for
+     <code>@Cacheable</code> methods and the call coalescer for
+     <code>@Idempotent</code> methods. */
+    private Object perform(Method m, Object[] args) throws Throwable
+    {
+        Cacheable cacheable = m.getAnnotation(Cacheable.class);
+        boolean idempotent = m.isAnnotationPresent(Idempotent.class);
+        if (cacheable == null && !idempotent) return call(m, args);
+
+        CallKey key = new CallKey(m, args);
+        InetSocketAddress endpoint = endpoint(m, args);
+        RemoteCall remote = () -> call(m, args);
+        if (idempotent)
+        {
+            RemoteCall direct = remote;
+            remote = () -> CallCoalescer.forEndpoint(endpoint).call(key, direct);
+        }
+        if (cacheable != null)
+            return ResultCache.forEndpoint(endpoint).call(key, cacheable.ttl(), remote);
+        return remote.perform();
+    }
+
+    /** Performs a call of a method returning a future on another thread, in
+     the call context of the calling thread. The skeleton completes the call
+     when the server object's future completes; the returned future then
+     completes with its value, or with the exception it failed with.
+
+     <p>
+     Cancelling the returned future cancels the call: its connection is
+     closed, and the skeleton interrupts the invocation.
+     */
+    private CompletableFuture<Object> performAsync(Method m, Object[] args)
+    {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CallContext context = CallContext.current();
+        PendingCall call = new PendingCall();
+        future.whenComplete((value, t) -> {
+            if (future.isCancelled()) call.cancel();
+        });
+        asyncExecutor.execute(() -> {
+            if (future.isDone()) return;
+            CallContext previous = CallContext.swap(context);
+            asyncCall.set(call);
+            try
+            {
+                future.complete(perform(m, args));
+            }
+            catch (Throwable t)
+            {
+                future.completeExceptionally(t);
+            }
+            finally
+            {
+                asyncCall.remove();
+                CallContext.swap(previous);
+            }
+        });
+        return future;
+    }
+
+    /** Creates the handle of a call with the given deadline sent by the
+     current thread. If the thread is completing the future of a call, the
+     call is cancelled along with the future. */
+    static PendingCall pendingCall(long deadline)
+    {
+        PendingCall pending = new PendingCall(deadline);
+        PendingCall outer = asyncCall.get();
+        if (outer != null) outer.link(pending);
+        return pending;
+    }
+
+    /** Returns <code>true</code> if the current thread is completing the
+     future of a call, and the future has been cancelled. */
+    static boolean asyncCallCancelled()
+    {
+        PendingCall outer = asyncCall.get();
+        return outer != null && outer.isCancelled();
+    }
+
+    /** Returns the address of the skeleton a call of <code>m</code> with the
+     given arguments will be sent to. This identifies the
+     <code>ResultCache</code> and <code>CallCoalescer</code> shared with other
+     stubs. */
+    InetSocketAddress endpoint(Method m, Object[] args) throws RMIException
+    {
+        return this.socketAddress;
+    }
+
+    /** Performs a remote call on the skeleton this handler is bound to.
+
+     <p>
+     Handlers which do not carry a single fixed address override this method
+     to choose the address for each call before delegating to
+     <code>callAt</code>.
+     */
+    Object call(Method m, Object[] args) throws Throwable
+    {
+        return callAt(this.socketAddress, m, args);
+    }
+
+    /** Performs a remote call on the skeleton listening at the given address. */
+    Object callAt(InetSocketAddress address, Method m, Object[] args)
+        throws Throwable
+    {
+        return unpack(exchange(address, m, args));
+    }
+
+    /** Sends a call to the skeleton at the given address and returns its
+     response, without interpreting it.
+
+     @throws RMIException If the call could not be sent or the response could
+     not be received.
+     */
+    Return exchange(InetSocketAddress address, Method m, Object[] args)
+        throws RMIException
+    {
+        return exchange(address, m, args, pendingCall(CallContext.deadlineFor(m)));
+    }
+
+    /** Sends a call to the skeleton at the given address and returns its
+     response, allowing the call to be cancelled through
+     <code>pending</code>.
+
+     <p>
+     If the call has a deadline, the time left is sent with the call and the
+     connection is closed when the deadline passes, making the call fail with
+     a <code>DeadlineExceededException</code>. A cancelled call fails with an
+     <code>RMIException</code>.
+
+     <p>
+     If a circuit breaker is in use for the address, the call is refused with
+     a <code>CircuitOpenException</code> while the breaker is open, and its
+     outcome is recorded otherwise. Cancelled calls are not recorded.
+     */
+    Return exchange(InetSocketAddress address, Method m, Object[] args,
+                    PendingCall pending)
+        throws RMIException
+    {
+        if (pending.remainingNanos() <= 0)
+            throw new DeadlineExceededException("deadline passed before call");
+        CircuitBreaker breaker = CircuitBreaker.existing(address);
+        if (breaker == null) return send(address, m, args, pending);
+
+        breaker.acquire();
+        long start = System.nanoTime();
         try
         {
-            socket = createSocketFromAddress(this.socketAddress);
+            Return ret = send(address, m, args, pending);
+            breaker.succeeded(System.nanoTime() - start);
+            return ret;
         }
-        catch (IOException e)
+        catch (RMIException e)
         {
-            throw new RMIException("could not create socket from address");
+            if (pending.isCancelled() && !pending.isExpired()) breaker.released();
+            else breaker.failed();
+            throw e;
         }
+    }
 
-        Object result = null;
-
-
-        Type[] types = m.getGenericParameterTypes();
+    private Return send(InetSocketAddress address, Method m, Object[] args,
+                        PendingCall pending)
+        throws RMIException
+    {
+        long remaining = pending.remainingNanos();
+        if (remaining <= 0) throw new DeadlineExceededException("deadline passed before call");
+        boolean hasDeadline = remaining != CallContext.NO_DEADLINE;
+        long callId = ThreadLocalRandom.current().nextLong() | 1;
 
-        Pair[] params = (args != null && args.length != 0)
-            ? new Pair[args.length]
+        Socket socket = new Socket();
+        if (!pending.attach(socket, address, callId)) throw new RMIException("call cancelled");
+        TimingWheel.Timeout timeout = hasDeadline
+            ? TimingWheel.shared().schedule(pending::expire, remaining, TimeUnit.NANOSECONDS)
             : null;
-
-        if (params != null)
+        try
         {
-            for (int i = 0 ; i < args.length ; i++)
+            try
             {
-                Type type = types[i];
-                params[i] = new Pair<Type, Object>(type, args[i]);
+                socket.connect(address, hasDeadline
+                    ? (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)) : 0);
+            }
+            catch (IOException e)
+            {
+                if (pending.isExpired())
+                    throw new DeadlineExceededException("deadline passed while connecting", e);
+                throw new RMIException("could not create socket from address", e);
             }
-        }
 
-        Shuttle shuttle = new Shuttle(m, params);
+            Shuttle shuttle = new Shuttle(m, Marshal.encode(args));
+            shuttle.callId = callId;
+            shuttle.lane = CallContext.lane();
+            shuttle.clientId = CallContext.clientId();
+            if (hasDeadline) shuttle.deadlineNanos = Math.max(1, pending.remainingNanos());
 
-        try {
-            // Create ObjectInputStream from socket
+            // The call is sent with the stream header, without waiting for
+            // the skeleton's, so that the skeleton receives it whole.
+            long spin = Spinner.budgetNanos(c, m);
             ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
-            oos.flush();
-            ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
-
             oos.writeObject(shuttle);
             oos.flush();
 
-            result = ois.readObject();
-            Return ret = (Return) result;
-            if (ret.invocationTargetException != null)
-            {
-                throw ret.invocationTargetException;
-            }
-            if (ret.rmiException != null)
-            {
-                throw ret.rmiException;
-            }
-            socket.close();
-            return ((Return) result).value;
+            Spinner.await(socket.getInputStream(), spin);
+            ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
+            return (Return) ois.readObject();
         }
         catch (RMIException e)
         {
@@ -104,26 +287,55 @@ public class RemoteInvocationHandler<T> implements InvocationHandler, Serializab
         }
         catch (IOException e)
         {
+            if (pending.isExpired())
+                throw new DeadlineExceededException("deadline passed during call", e);
+            if (pending.isCancelled())
+                throw new RMIException("call cancelled", e);
             throw new RMIException("stream problem", e.getCause());
         }
         catch (ClassNotFoundException e)
         {
             throw new RMIException("class not found", e.getCause());
         }
-        catch (InvocationTargetException e)
+        finally
+        {
+            if (timeout != null) timeout.cancel();
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // The response, if any, has already been read.
+            }
+        }
+    }
+
+    /** Returns the value carried by a response, or throws the exception it
+     carries. */
+    static Object unpack(Return ret) throws Throwable
+    {
+        if (ret.invocationTargetException != null)
         {
+            InvocationTargetException e = ret.invocationTargetException;
             throw e.getTargetException() != null
                 ? e.getTargetException().getCause()
                 : e;
         }
+        if (ret.rmiException != null)
+        {
+            throw ret.rmiException;
+        }
+        return ret.value;
     }
 
-    private static Socket createSocketFromAddress(InetSocketAddress socketAddress)
-        throws IOException
+    /** Returns <code>true</code> if the exception reports that the skeleton
+     refused the connection, or that the call was refused by an open circuit
+     breaker, in which case the call was never sent. */
+    static boolean isConnectFailure(RMIException e)
     {
-        InetAddress adr = socketAddress.getAddress();
-        int port = socketAddress.getPort();
-        return new Socket(adr, port);
+        return e instanceof CircuitOpenException
+            || e.getCause() instanceof ConnectException;
     }
 
 
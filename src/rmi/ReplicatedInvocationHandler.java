@@ -0,0 +1,113 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+/** Invocation handler for stubs routing reads to replicas and writes to a
+ primary.
+
+ <p>
+ Calls to <code>@ReadOnly</code> methods are spread over the replicas as by a
+ <code>BalancedInvocationHandler</code>, including hedging. If no replica
+ accepts the connection, the read is sent to the primary. All other calls
+ are sent to the primary.
+
+ <p>
+ In read-your-writes mode, reads made within the session window after a call
+ to the primary completes are also sent to the primary, so that they observe
+ that write even if the replicas have not caught up yet. The session is the
+ stub itself.
+ */
+class ReplicatedInvocationHandler<T> extends BalancedInvocationHandler<T>
+{
+    private final InetSocketAddress primary;
+    private final long sessionNanos;
+    private transient volatile long lastWrite;
+    private transient volatile boolean written;
+
+    ReplicatedInvocationHandler(Class<T> c, InetSocketAddress primary,
+                                LoadBalancer replicas, HedgePolicy hedging,
+                                long sessionMillis)
+    {
+        super(c, replicas, hedging);
+        if (primary == null) throw new NullPointerException("primary == null");
+        if (sessionMillis < 0) throw new IllegalArgumentException("sessionMillis < 0");
+        this.primary = primary;
+        this.sessionNanos = sessionMillis * 1000000;
+    }
+
+    @Override
+    InetSocketAddress endpoint(Method m, Object[] args)
+    {
+        // Results and coalesced calls are shared with other stubs under the
+        // address of the primary, which identifies the replicated service.
+        return primary;
+    }
+
+    @Override
+    Object call(Method m, Object[] args) throws Throwable
+    {
+        if (m.isAnnotationPresent(ReadOnly.class) && !pinned())
+        {
+            try
+            {
+                return super.call(m, args);
+            }
+            catch (RMIException e)
+            {
+                if (!isConnectFailure(e)) throw e;
+                return callAt(primary, m, args);
+            }
+        }
+        try
+        {
+            return callAt(primary, m, args);
+        }
+        finally
+        {
+            if (sessionNanos > 0 && !m.isAnnotationPresent(ReadOnly.class))
+            {
+                lastWrite = System.nanoTime();
+                written = true;
+            }
+        }
+    }
+
+    /** Returns <code>true</code> if reads must currently be sent to the
+     primary to observe this stub's last write. */
+    private boolean pinned()
+    {
+        return written && System.nanoTime() - lastWrite < sessionNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return c.getName() + " @ " + primary + " + "
+            + Arrays.toString(balancer.endpoints());
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == null) return false;
+        try
+        {
+            Object handler = ROR.getInvocationHandler(obj);
+            if (!(handler instanceof ReplicatedInvocationHandler)) return false;
+            ReplicatedInvocationHandler other = (ReplicatedInvocationHandler) handler;
+            return primary.equals(other.primary) && super.equals(obj);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return toString().hashCode();
+    }
+}
@@ -0,0 +1,203 @@
+package rmi;
+
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Client-side cache of the results of <code>@Cacheable</code> methods.
+
+ <p>
+ The cache is bounded by an estimate of the memory taken by its entries: the
+ serialized size of each result, plus a fixed overhead per entry. It is split
+ into segments, each guarded by its own lock and evicting its least recently
+ used entries when over its share of the budget, so that concurrent callers
+ rarely contend.
+
+ <p>
+ One cache is shared by all stubs that call the skeleton at a given address.
+ <code>forEndpoint</code> returns it, creating a cache with the default budget
+ on first use; a cache with another budget may be installed beforehand with
+ <code>register</code>.
+ */
+public class ResultCache
+{
+    /** Default budget, in bytes, of caches created by
+     <code>forEndpoint</code>. */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final int SEGMENTS = 16;
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final Object NULL = new Object();
+    private static final ConcurrentHashMap<InetSocketAddress, ResultCache> caches =
+        new ConcurrentHashMap<>();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** Creates a cache bounded by the given number of bytes.
+
+     @throws IllegalArgumentException If <code>maxBytes</code> is not
+     positive.
+     */
+    public ResultCache(long maxBytes)
+    {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes <= 0");
+        for (int i = 0 ; i < SEGMENTS ; i++)
+            segments[i] = new Segment(Math.max(1, maxBytes / SEGMENTS));
+    }
+
+    /** Returns the cache shared by all stubs for the given skeleton address. */
+    public static ResultCache forEndpoint(InetSocketAddress address)
+    {
+        if (address == null) throw new NullPointerException("address == null");
+        return caches.computeIfAbsent(address, a -> new ResultCache(DEFAULT_MAX_BYTES));
+    }
+
+    /** Makes <code>cache</code> the cache shared by all stubs for the given
+     skeleton address, replacing any cache already used for it. */
+    public static void register(InetSocketAddress address, ResultCache cache)
+    {
+        if (address == null) throw new NullPointerException("address == null");
+        if (cache == null) throw new NullPointerException("cache == null");
+        caches.put(address, cache);
+    }
+
+    /** Returns the number of calls answered from the cache. */
+    public long hits()
+    {
+        return hits.sum();
+    }
+
+    /** Returns the number of calls not found in the cache. */
+    public long misses()
+    {
+        return misses.sum();
+    }
+
+    /** Returns the number of entries evicted to keep within the budget. */
+    public long evictions()
+    {
+        return evictions.sum();
+    }
+
+    /** Returns the estimated number of bytes taken by the cached entries. */
+    public long size()
+    {
+        long size = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                size += segment.bytes;
+            }
+        }
+        return size;
+    }
+
+    /** Removes all entries. */
+    public void clear()
+    {
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                segment.entries.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    /** Performs a call through the cache.
+
+     <p>
+     If an unexpired result for <code>key</code> is cached it is returned.
+     Otherwise the call is performed and, if it returns normally, its result
+     is cached for <code>ttlMillis</code> milliseconds.
+     */
+    Object call(CallKey key, long ttlMillis, RemoteCall call) throws Throwable
+    {
+        Segment segment = segmentFor(key);
+        Object value = segment.get(key, System.nanoTime());
+        if (value != null)
+        {
+            hits.increment();
+            return value == NULL ? null : value;
+        }
+        misses.increment();
+        Object result = call.perform();
+        segment.put(key, new Entry(result == null ? NULL : result,
+            System.nanoTime() + ttlMillis * 1000000L, weigh(result)));
+        return result;
+    }
+
+    private Segment segmentFor(CallKey key)
+    {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static int weigh(Object value)
+    {
+        return ENTRY_OVERHEAD + Marshal.sizeOf(value);
+    }
+
+    private static class Entry
+    {
+        final Object value;
+        final long expires;
+        final int weight;
+
+        Entry(Object value, long expires, int weight)
+        {
+            this.value = value;
+            this.expires = expires;
+            this.weight = weight;
+        }
+    }
+
+    private class Segment
+    {
+        final long maxBytes;
+        final LinkedHashMap<CallKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long bytes = 0;
+
+        Segment(long maxBytes)
+        {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized Object get(CallKey key, long now)
+        {
+            Entry entry = entries.get(key);
+            if (entry == null) return null;
+            if (now - entry.expires >= 0)
+            {
+                entries.remove(key);
+                bytes -= entry.weight;
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(CallKey key, Entry entry)
+        {
+            if (entry.weight > maxBytes) return;
+            Entry old = entries.put(key, entry);
+            if (old != null) bytes -= old.weight;
+            bytes += entry.weight;
+            Iterator<Map.Entry<CallKey, Entry>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext())
+            {
+                Entry evicted = eldest.next().getValue();
+                eldest.remove();
+                bytes -= evicted.weight;
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -13,6 +13,9 @@ public class Return<T> implements Serializable
     Object value;
     InvocationTargetException invocationTargetException;
     RMIException rmiException;
+    /** Number of calls the skeleton was executing when it sent this response,
+     used by clients as a load hint. */
+    int load;
 
     Return(Type type, Object value, InvocationTargetException invocationTargetException, RMIException rmiException)
     {
@@ -0,0 +1,233 @@
+package rmi;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/** Bounded lock-free queue of preallocated slots, for any number of
+ producers and consumers.
+
+ <p>
+ As in the Disruptor, producers claim positions by advancing a shared
+ cursor, write their items into the slots of those positions and publish
+ them, and every slot carries the sequence number saying which turn it is
+ in. A slot at position <code>p</code> is free when its sequence is
+ <code>p</code>, and holds a published item when it is <code>p + 1</code>;
+ a consumer taking the item sets it to <code>p + capacity</code>, freeing it
+ for the next lap. No locks are taken and, once the buffer is built, nothing
+ is allocated.
+
+ <p>
+ Producers may claim several positions at once with <code>offer(E[],
+ int)</code>, and consumers take several items at once with
+ <code>drain</code>. Consumers with nothing to take wait according to a
+ <code>WaitStrategy</code>.
+ */
+class RingBuffer<E>
+{
+    /** Number of times a waiting consumer spins before yielding or
+     parking. */
+    static final int SPIN_TRIES = 100;
+    /** Number of times a parking consumer yields before parking. */
+    static final int YIELD_TRIES = 10;
+
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final WaitStrategy strategy;
+    private final ConcurrentLinkedQueue<Thread> sleepers = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+
+    /** Creates a buffer of <code>capacity</code> slots, which must be a power
+     of two.
+
+     @throws IllegalArgumentException If <code>capacity</code> is not a
+     positive power of two.
+     @throws NullPointerException If <code>strategy</code> is
+     <code>null</code>.
+     */
+    RingBuffer(int capacity, WaitStrategy strategy)
+    {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0)
+            throw new IllegalArgumentException("capacity is not a power of two");
+        if (strategy == null) throw new NullPointerException("strategy == null");
+        this.items = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0 ; i < capacity ; i++) sequences.set(i, i);
+        this.mask = capacity - 1;
+        this.strategy = strategy;
+    }
+
+    /** Returns the number of slots. */
+    int capacity()
+    {
+        return items.length;
+    }
+
+    /** Returns the number of items claimed and not yet taken. */
+    int size()
+    {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /** Publishes an item. Returns <code>false</code>, leaving the buffer
+     unchanged, if it is full or closed.
+
+     @throws NullPointerException If <code>item</code> is <code>null</code>.
+     */
+    boolean offer(E item)
+    {
+        if (item == null) throw new NullPointerException("item == null");
+        return publish(null, item, 1) == 1;
+    }
+
+    /** Publishes the first <code>count</code> items of <code>batch</code> in
+     one claim, or as many of the first of them as there are free slots.
+     Returns the number published, which is 0 if the buffer is full or
+     closed.
+
+     @throws NullPointerException If one of the items is <code>null</code>.
+     */
+    int offer(E[] batch, int count)
+    {
+        if (count > batch.length) throw new IllegalArgumentException("count > batch.length");
+        for (int i = 0 ; i < count ; i++)
+        {
+            if (batch[i] == null) throw new NullPointerException("item == null");
+        }
+        return publish(batch, null, count);
+    }
+
+    /** Claims up to <code>count</code> positions and publishes into them the
+     items of <code>batch</code>, or <code>single</code> if there is no
+     batch. */
+    private int publish(Object[] batch, Object single, int count)
+    {
+        if (count <= 0 || closed) return 0;
+        long position;
+        int claimed;
+        while (true)
+        {
+            position = tail.get();
+            claimed = 0;
+            // Slots may be freed out of order, so check each one.
+            while (claimed < count && sequences.get(index(position + claimed)) == position + claimed)
+                claimed++;
+            if (claimed == 0)
+            {
+                // Still holding the item of the previous lap: full.
+                if (sequences.get(index(position)) < position) return 0;
+                continue;
+            }
+            if (tail.compareAndSet(position, position + claimed)) break;
+        }
+        for (int i = 0 ; i < claimed ; i++)
+        {
+            int slot = index(position + i);
+            items[slot] = batch == null ? single : batch[i];
+            sequences.set(slot, position + i + 1);
+        }
+        wake();
+        return claimed;
+    }
+
+    /** Takes the oldest published item, or returns <code>null</code> if there
+     is none. */
+    E poll()
+    {
+        while (true)
+        {
+            long position = head.get();
+            int slot = index(position);
+            if (sequences.get(slot) != position + 1) return null;
+            if (head.compareAndSet(position, position + 1)) return empty(slot, position);
+        }
+    }
+
+    /** Takes up to <code>max</code> published items in one claim, in order,
+     into <code>into</code>. Returns the number taken. */
+    int drain(E[] into, int max)
+    {
+        long position;
+        int claimed;
+        while (true)
+        {
+            position = head.get();
+            claimed = 0;
+            while (claimed < max
+                   && sequences.get(index(position + claimed)) == position + claimed + 1)
+                claimed++;
+            if (claimed == 0) return 0;
+            if (head.compareAndSet(position, position + claimed)) break;
+        }
+        for (int i = 0 ; i < claimed ; i++) into[i] = empty(index(position + i), position + i);
+        return claimed;
+    }
+
+    /** Empties a claimed slot and frees it for the next lap. */
+    private E empty(int slot, long position)
+    {
+        @SuppressWarnings("unchecked")
+        E item = (E) items[slot];
+        items[slot] = null;
+        sequences.set(slot, position + items.length);
+        return item;
+    }
+
+    /** Takes the oldest item, waiting for one according to the wait
+     strategy. Returns <code>null</code> once the buffer is closed and
+     empty.
+
+     @throws InterruptedException If the thread is interrupted while
+     waiting.
+     */
+    E take() throws InterruptedException
+    {
+        for (int tries = 0 ; ; tries++)
+        {
+            E item = poll();
+            if (item != null) return item;
+            if (closed && size() == 0) return null;
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (strategy == WaitStrategy.BUSY_SPIN || tries < SPIN_TRIES)
+            {
+                Thread.onSpinWait();
+            }
+            else if (strategy == WaitStrategy.YIELD || tries < SPIN_TRIES + YIELD_TRIES)
+            {
+                Thread.yield();
+            }
+            else
+            {
+                Thread current = Thread.currentThread();
+                sleepers.add(current);
+                // Checked after registering, so that a producer publishing
+                // meanwhile finds this thread to wake.
+                if (size() == 0 && !closed) LockSupport.park(this);
+                sleepers.remove(current);
+            }
+        }
+    }
+
+    /** Refuses further items and wakes waiting consumers, which take the
+     items left before <code>take</code> returns <code>null</code>. */
+    void close()
+    {
+        closed = true;
+        for (Thread sleeper : sleepers) LockSupport.unpark(sleeper);
+    }
+
+    private void wake()
+    {
+        Thread sleeper = sleepers.poll();
+        if (sleeper != null) LockSupport.unpark(sleeper);
+    }
+
+    private int index(long position)
+    {
+        return (int) position & mask;
+    }
+}
@@ -0,0 +1,19 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Fixes the threads on which skeletons run the calls of a remote interface
+ method, instead of the choice their <code>ExecutionPolicy</code> learns
+ from the cost of the method. <code>Execution.CPU</code> is only used when
+ given by this annotation.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RunOn
+{
+    /** Threads on which calls of the method run. */
+    Execution value();
+}
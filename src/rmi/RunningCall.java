@@ -0,0 +1,76 @@
+package rmi;
+
+import java.util.concurrent.TimeUnit;
+
+/** A call being invoked by a skeleton thread, which may be interrupted
+ because its deadline passed or because the client cancelled it.
+
+ <p>
+ The invoking thread creates the object before calling the server object and
+ calls <code>finish</code> afterwards. Interrupts are only delivered between
+ the two, and <code>finish</code> clears any interrupt that was delivered, so
+ that it does not leak into whatever the thread does next.
+ */
+class RunningCall
+{
+    private final Thread thread = Thread.currentThread();
+    private final TimingWheel.Timeout timeout;
+    private boolean finished = false;
+    private boolean interrupted = false;
+    private boolean expired = false;
+
+    /** Starts tracking the call carried by <code>shuttle</code> on the current
+     thread, scheduling an interrupt at its deadline if it has one. */
+    RunningCall(Shuttle shuttle)
+    {
+        if (shuttle.deadlineNanos > 0)
+        {
+            long remaining = shuttle.deadlineNanos - (System.nanoTime() - shuttle.received);
+            timeout = TimingWheel.shared().schedule(this::expire, remaining,
+                TimeUnit.NANOSECONDS);
+        }
+        else
+        {
+            timeout = null;
+        }
+    }
+
+    /** Interrupts the invocation at the client's request. */
+    synchronized void cancel()
+    {
+        if (finished) return;
+        interrupted = true;
+        thread.interrupt();
+    }
+
+    private synchronized void expire()
+    {
+        if (finished) return;
+        expired = true;
+        interrupted = true;
+        thread.interrupt();
+    }
+
+    /** Stops tracking the call. Must be called by the invoking thread. */
+    void finish()
+    {
+        if (timeout != null) timeout.cancel();
+        boolean clear;
+        synchronized (this)
+        {
+            finished = true;
+            clear = interrupted;
+        }
+        if (clear) Thread.interrupted();
+    }
+
+    synchronized boolean isInterrupted()
+    {
+        return interrupted;
+    }
+
+    synchronized boolean isExpired()
+    {
+        return expired;
+    }
+}
@@ -0,0 +1,10 @@
+package rmi;
+
+import java.io.IOException;
+
+/** A call of the server object whose result may be shared, as by the
+ memoization cache or by coalesced invocations. */
+interface ServerCall
+{
+    Object invoke() throws ReflectiveOperationException, IOException;
+}
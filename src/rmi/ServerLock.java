@@ -0,0 +1,77 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/** Read/write lock enforcing the concurrency modes declared for the methods
+ of a server object.
+
+ <p>
+ <code>@ReadOnly</code> methods take the read lock and <code>@Exclusive</code>
+ methods the write lock; <code>@Unsynchronized</code> methods, and methods
+ without a mode, take no lock. The mode of each method is resolved once, from
+ the annotations on the method of the server object's class, on the method
+ of the remote interface, on the server object's class and on the interface,
+ in that order.
+ */
+class ServerLock
+{
+    private enum Mode { UNSYNCHRONIZED, SHARED, EXCLUSIVE }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentHashMap<Method, Mode> modes = new ConcurrentHashMap<>();
+
+    /** Returns the lock to hold while invoking the given interface method on
+     <code>server</code>, or <code>null</code> if none is needed. */
+    Lock lockFor(Method method, Object server)
+    {
+        Mode mode = modes.get(method);
+        if (mode == null)
+        {
+            mode = resolve(method, server.getClass());
+            modes.put(method, mode);
+        }
+        switch (mode)
+        {
+            case SHARED: return lock.readLock();
+            case EXCLUSIVE: return lock.writeLock();
+            default: return null;
+        }
+    }
+
+    private static Mode resolve(Method method, Class<?> implementation)
+    {
+        Mode mode = null;
+        try
+        {
+            mode = methodMode(implementation.getMethod(method.getName(),
+                method.getParameterTypes()));
+        }
+        catch (NoSuchMethodException e)
+        {
+            // The server object implements the interface, so this does not
+            // happen; fall back to the interface.
+        }
+        if (mode == null) mode = methodMode(method);
+        if (mode == null) mode = typeMode(implementation);
+        if (mode == null) mode = typeMode(method.getDeclaringClass());
+        return mode == null ? Mode.UNSYNCHRONIZED : mode;
+    }
+
+    private static Mode methodMode(Method method)
+    {
+        if (method.isAnnotationPresent(Unsynchronized.class)) return Mode.UNSYNCHRONIZED;
+        if (method.isAnnotationPresent(Exclusive.class)) return Mode.EXCLUSIVE;
+        if (method.isAnnotationPresent(ReadOnly.class)) return Mode.SHARED;
+        return null;
+    }
+
+    private static Mode typeMode(Class<?> type)
+    {
+        if (type.isAnnotationPresent(Unsynchronized.class)) return Mode.UNSYNCHRONIZED;
+        if (type.isAnnotationPresent(Exclusive.class)) return Mode.EXCLUSIVE;
+        return null;
+    }
+}
@@ -0,0 +1,147 @@
+package rmi;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/** The server objects of a skeleton constructed with a factory instead of a
+ single shared server object.
+
+ <p>
+ Each invocation leases an instance for its duration, so an instance is
+ never called by two threads at once and needs no synchronization. Instances
+ are created on demand when none is idle, and at most <code>maxIdle</code>
+ of them are kept for reuse. The most recently returned instance is leased
+ first, while its state is still in the processor caches.
+
+ <p>
+ When instances are pinned, each thread of the skeleton which runs calls one
+ after another, a worker or an actor or partition thread, keeps an instance
+ of its own for all the calls it runs, instead of leasing one per call.
+ Calls running on a thread started for their connection alone, or on the
+ CPU pool, whose threads are shared by all skeletons, still lease
+ instances.
+ */
+public class ServerPool<T>
+{
+    private final Supplier<T> factory;
+    private final ConcurrentLinkedDeque<T> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final ThreadLocal<T> pinnedInstance = new ThreadLocal<>();
+    private volatile int maxIdle = Runtime.getRuntime().availableProcessors() * 2;
+    private volatile boolean pinned = false;
+
+    /** Creates a pool of instances made by <code>factory</code>, creating the
+     first instance at once.
+
+     @throws NullPointerException If <code>factory</code> is
+     <code>null</code>, or returns <code>null</code>.
+     */
+    ServerPool(Supplier<T> factory)
+    {
+        if (factory == null) throw new NullPointerException("factory == null");
+        this.factory = factory;
+        idle.offerFirst(create());
+        idleCount.set(1);
+    }
+
+    /** Sets the number of idle instances kept for reuse. Instances returned
+     to a full pool are dropped.
+
+     @throws IllegalArgumentException If <code>maxIdle</code> is negative.
+     */
+    public void setMaxIdle(int maxIdle)
+    {
+        if (maxIdle < 0) throw new IllegalArgumentException("maxIdle < 0");
+        this.maxIdle = maxIdle;
+    }
+
+    /** Returns the number of idle instances kept for reuse. */
+    public int getMaxIdle()
+    {
+        return maxIdle;
+    }
+
+    /** Sets whether worker, actor and partition threads keep an instance of
+     their own. Instances pinned before pinning is turned off are kept for when it
+     is turned on again. */
+    public void setPinned(boolean pinned)
+    {
+        this.pinned = pinned;
+    }
+
+    /** Returns whether worker, actor and partition threads keep an instance
+     of their own. */
+    public boolean isPinned()
+    {
+        return pinned;
+    }
+
+    /** Returns the number of instances created. */
+    public long created()
+    {
+        return created.get();
+    }
+
+    /** Returns the number of idle instances. */
+    public int idle()
+    {
+        return idleCount.get();
+    }
+
+    /** Returns the number of instances currently leased. */
+    public int leased()
+    {
+        return leased.get();
+    }
+
+    /** Leases an idle instance, creating one if none is idle. The instance
+     must be returned with <code>release</code>. */
+    T lease()
+    {
+        leased.incrementAndGet();
+        T server = idle.pollFirst();
+        if (server == null) return create();
+        idleCount.decrementAndGet();
+        return server;
+    }
+
+    /** Returns a leased instance to the pool. */
+    void release(T server)
+    {
+        leased.decrementAndGet();
+        if (idleCount.incrementAndGet() <= maxIdle)
+        {
+            idle.offerFirst(server);
+        }
+        else
+        {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /** Returns the instance pinned to the current thread, creating it on first
+     use, or <code>null</code> if instances are not pinned. */
+    T pinned()
+    {
+        if (!pinned) return null;
+        T server = pinnedInstance.get();
+        if (server == null)
+        {
+            server = create();
+            pinnedInstance.set(server);
+        }
+        return server;
+    }
+
+    private T create()
+    {
+        T server = factory.get();
+        if (server == null) throw new NullPointerException("factory returned null");
+        created.incrementAndGet();
+        return server;
+    }
+}
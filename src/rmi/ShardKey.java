@@ -0,0 +1,22 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks the parameter of a remote interface method which selects the shard
+ serving the call.
+
+ <p>
+ Stubs created with <code>Stub.createSharded</code> send each call to the
+ skeleton which the <code>HashRing</code> assigns to the value of this
+ parameter. Every method of a sharded interface must have exactly one such
+ parameter. Calls with equal keys, as compared by their serialized form, are
+ always sent to the same skeleton while the ring is unchanged.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface ShardKey
+{
+}
@@ -0,0 +1,111 @@
+package rmi;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Invocation handler for stubs routing each call to a shard.
+
+ <p>
+ The value of the <code>@ShardKey</code> parameter of each call is located on
+ the <code>HashRing</code>, and the call is sent to the skeleton owning it.
+ Calls are not retried on other skeletons, since only the owner holds the
+ state for a key.
+ */
+class ShardedInvocationHandler<T> extends RemoteInvocationHandler<T>
+{
+    final HashRing ring;
+    private final Map<Method, Integer> keyIndices;
+
+    ShardedInvocationHandler(Class<T> c, HashRing ring)
+    {
+        super(c);
+        if (ring == null) throw new NullPointerException("ring == null");
+        if (ring.nodes().isEmpty()) throw new IllegalArgumentException("hash ring is empty");
+        this.ring = ring;
+        this.keyIndices = keyIndices(c);
+    }
+
+    /** Finds the <code>@ShardKey</code> parameter of each method of the
+     interface.
+
+     @throws IllegalArgumentException If a method does not have exactly one
+     such parameter.
+     */
+    private static Map<Method, Integer> keyIndices(Class<?> c)
+    {
+        HashMap<Method, Integer> indices = new HashMap<>();
+        for (Method m : c.getMethods())
+        {
+            int index = -1;
+            Annotation[][] annotations = m.getParameterAnnotations();
+            for (int i = 0 ; i < annotations.length ; i++)
+            {
+                for (Annotation annotation : annotations[i])
+                {
+                    if (!(annotation instanceof ShardKey)) continue;
+                    if (index >= 0)
+                        throw new IllegalArgumentException("several shard keys in " + m);
+                    index = i;
+                }
+            }
+            if (index < 0) throw new IllegalArgumentException("no shard key in " + m);
+            indices.put(m, index);
+        }
+        return indices;
+    }
+
+    @Override
+    InetSocketAddress endpoint(Method m, Object[] args)
+    {
+        // Results and coalesced calls are shared under the shard owning the
+        // key, which answers for it as it would to any other stub. A key
+        // moving to another shard leaves the old shard's entries behind.
+        // Only calls actually sent count towards the hot keys, so the key is
+        // located here without being counted.
+        return ring.locate(keyOf(m, args));
+    }
+
+    @Override
+    Object call(Method m, Object[] args) throws Throwable
+    {
+        return callAt(ring.route(keyOf(m, args)), m, args);
+    }
+
+    /** Returns the shard key of a call. */
+    private Object keyOf(Method m, Object[] args)
+    {
+        return args[keyIndices.get(m)];
+    }
+
+    @Override
+    public String toString()
+    {
+        return c.getName() + " @ " + ring.nodes();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == null) return false;
+        try
+        {
+            Object handler = ROR.getInvocationHandler(obj);
+            if (!(handler instanceof ShardedInvocationHandler)) return false;
+            ShardedInvocationHandler other = (ShardedInvocationHandler) handler;
+            return c == other.c && ring.nodes().equals(other.ring.nodes());
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return c.getName().hashCode();
+    }
+}
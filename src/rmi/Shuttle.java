@@ -10,20 +10,56 @@ import java.lang.reflect.Type;
 class Shuttle implements Serializable
 {
     int hashCode;
-    Pair<Type, Object>[] args;
+    byte[] arguments;
     Class<?>[] paramTypes;
     String methodString;
     Type returnType;
     String name;
+    /** Identifier of the call, used to cancel it. */
+    long callId;
+    /** Time left before the deadline of the call when it was sent, in
+     nanoseconds, or <code>0</code> if the call has no deadline. */
+    long deadlineNanos;
+    /** Lane set by the client for the call, or <code>null</code> to use the
+     <code>@Priority</code> of the method. */
+    Lane lane;
+    /** Identifier of the client set by the caller, or <code>null</code> to
+     identify the client by its address. */
+    String clientId;
+    /** <code>true</code> if this shuttle asks the skeleton to cancel the call
+     <code>callId</code> rather than carrying a call. */
+    boolean cancel;
+    /** <code>System.nanoTime</code> at which the skeleton received the
+     shuttle. */
+    transient long received;
 
-    Shuttle(Method method, Pair<Type, Object>[] args)
+    Shuttle(Method method, byte[] arguments)
     {
         this.hashCode = method.hashCode();
-        this.args = args;
+        this.arguments = arguments;
         this.methodString = method.toString();
-        this.returnType = method.getGenericReturnType();
+        this.returnType = method.getReturnType();
         this.paramTypes = method.getParameterTypes();
         this.name = method.getName();
     }
+
+    private Shuttle()
+    {
+    }
+
+    /** Creates a shuttle asking the skeleton to cancel a call. */
+    static Shuttle cancel(long callId)
+    {
+        Shuttle shuttle = new Shuttle();
+        shuttle.callId = callId;
+        shuttle.cancel = true;
+        return shuttle;
+    }
+
+    /** Returns <code>true</code> if the deadline of the call has passed. */
+    boolean isExpired()
+    {
+        return deadlineNanos > 0 && System.nanoTime() - received >= deadlineNanos;
+    }
 }
 
@@ -7,13 +7,16 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.net.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Hashtable;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /** RMI skeleton
 
@@ -39,13 +42,20 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class Skeleton<T>
 {
-    private Lock lock = new ReentrantLock();
-    private Condition methodInvoking = lock.newCondition();
-    private int currentlyInvoking = 0;
     private T server;
     private InetSocketAddress socketAddress;
-    private LinkedList<Thread> threads = new LinkedList<Thread>();
-    private Thread listenerThread = null;
+    private ConcurrentLinkedQueue<Thread> threads = new ConcurrentLinkedQueue<Thread>();
+    private volatile Thread listenerThread = null;
+    /** Guards the replacement of a listening thread held up by an inline
+     call. */
+    private final Object listenerLock = new Object();
+    private volatile ForkJoinPool cpuPool;
+    private volatile Workers workers;
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+    /** Time reader threads spin for calls, in nanoseconds, or -1 for that
+     given by the interface's <code>@SpinWait</code>. */
+    private volatile long spinNanos = -1;
     private boolean isStarted = false;
     private boolean shouldListenerRun;
     private ServerSocket serverSocket;
@@ -54,6 +64,9 @@ public class Skeleton<T>
     private int port = -1;
     private boolean isLocalHost = false;
     private String whichConstructor = null;
+    private boolean actorMode = false;
+    private boolean partitioned;
+    private int partitionCount = Runtime.getRuntime().availableProcessors();
 
     /** Creates a <code>Skeleton</code> with no initial server address. The
      address will be determined by the system when <code>start</code> is
@@ -85,6 +98,11 @@ public class Skeleton<T>
         this.c = c;
         this.isLocalHost = true;
         this.whichConstructor = "Skeleton(Class<T> c, T server)";
+        if (server instanceof MemoCacheAware)
+            ((MemoCacheAware) server).setMemoCache(skeletonService.memoCache);
+        skeletonService.declareBulkheads(c);
+        skeletonService.executionPolicy.declare(c);
+        this.partitioned = skeletonService.declarePartitionKeys(c);
     }
 
     /** Creates a <code>Skeleton</code> with the given initial server address.
@@ -123,6 +141,75 @@ public class Skeleton<T>
         this.server = server;
         this.c = c;
         this.whichConstructor = "Skeleton(Class<T> c, T server, InetSocketAddress address)";
+        if (server instanceof MemoCacheAware)
+            ((MemoCacheAware) server).setMemoCache(skeletonService.memoCache);
+        skeletonService.declareBulkheads(c);
+        skeletonService.executionPolicy.declare(c);
+        this.partitioned = skeletonService.declarePartitionKeys(c);
+    }
+
+    /** Creates a <code>Skeleton</code> whose invocations are each forwarded
+     to an instance of a pool of server objects, instead of to one shared
+     server object. See <code>ServerPool</code>.
+
+     <p>
+     Each instance is only called by one thread at a time, so server objects
+     which are not thread-safe can serve concurrent calls without
+     synchronization. Concurrency modes declared on the server objects are
+     ignored.
+
+     @param c An object representing the class of the interface for which the
+     skeleton server is to handle method call requests.
+     @param factory Creates objects implementing said interface. The first
+     object is created at once.
+     @param address The address at which the skeleton is to run. If
+     <code>null</code>, the address will be chosen by the
+     system when <code>start</code> is called.
+     @throws Error If <code>c</code> does not represent a remote interface.
+     @throws NullPointerException If either of <code>c</code> or
+     <code>factory</code> is <code>null</code>, or if
+     <code>factory</code> returns <code>null</code>.
+     */
+    public static <T> Skeleton<T> pooled(Class<T> c, Supplier<T> factory, InetSocketAddress address)
+    {
+        return new Skeleton<T>(c, address, factory);
+    }
+
+    /** Creates a pooled <code>Skeleton</code> with no initial server address.
+     Equivalent to <code>pooled(c, factory, null)</code>. */
+    public static <T> Skeleton<T> pooled(Class<T> c, Supplier<T> factory)
+    {
+        return new Skeleton<T>(c, null, factory);
+    }
+
+    // Not overloaded on the public constructors' parameter order, so that
+    // passing null for the server object stays unambiguous.
+    private Skeleton(Class<T> c, InetSocketAddress address, Supplier<T> factory)
+    {
+        if (c == null) throw new NullPointerException("c == null");
+        if (factory == null) throw new NullPointerException("factory == null");
+        if (!Validation.isRemoteInterface(c))
+            throw new Error("server's Class does not implement Remote : " + c);
+        if (address == null)
+        {
+            this.isLocalHost = true;
+        }
+        else
+        {
+            this.socketAddress = address;
+            this.port = address.getPort();
+        }
+        this.c = c;
+        this.whichConstructor = "Skeleton.pooled(Class<T> c, Supplier<T> factory, InetSocketAddress address)";
+        skeletonService.pool = new ServerPool<T>(() -> {
+            T server = factory.get();
+            if (server instanceof MemoCacheAware)
+                ((MemoCacheAware) server).setMemoCache(skeletonService.memoCache);
+            return server;
+        });
+        skeletonService.declareBulkheads(c);
+        skeletonService.executionPolicy.declare(c);
+        this.partitioned = skeletonService.declarePartitionKeys(c);
     }
 
     /** Called when the listening thread exits.
@@ -214,43 +301,231 @@ public class Skeleton<T>
             listen_error(rmiException);
         }
 
-        // Create thread to listen for connection requests
-        Thread listener = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try
-                {
-                    while (!Thread.currentThread().isInterrupted())
-                    {
-                        Socket socket = serverSocket.accept();
-                        Runnable clientRunnable = createHandler(lock, methodInvoking,
-                            currentlyInvoking, c, server, socket);
-                        Thread thread = new Thread(clientRunnable);
-                        threads.add(thread);
-                        thread.start();
-                    }
-                }
-                catch (IOException e)
-                {
-                    if (Thread.currentThread().isInterrupted())
-                    {
-                        // We caused this exception
-                        return;
-                    }
-                    RMIException rmiException = new RMIException(e.getMessage(), e.getCause());
-                    rmiException.printStackTrace();
-                    listen_error(rmiException);
-                    isStarted = false;
-                    return;
-                }
+        closeMailboxes();
+        skeletonService.mailbox = actorMode ? new Mailbox("skeleton-actor " + c.getName()) : null;
+        if (partitioned && !actorMode)
+        {
+            Mailbox[] partitions = new Mailbox[partitionCount];
+            for (int i = 0 ; i < partitions.length ; i++)
+                partitions[i] = new Mailbox("skeleton-partition-" + i + " " + c.getName());
+            skeletonService.partitions = partitions;
+        }
 
-            }
-        });
+        this.workers = workerCount == 0 ? null
+            : new Workers("skeleton-worker " + c.getName(), workerCount, waitStrategy);
+        this.cpuPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+        // Create thread to listen for connection requests
+        Thread listener = new Thread(this::listen);
         this.isStarted = true;
         this.listenerThread = listener;
         listener.start();
     }
 
+    /** Accepts connections until the skeleton stops, or until another
+     listening thread takes over from the current one. */
+    private void listen()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted()
+                   && listenerThread == Thread.currentThread())
+            {
+                Socket socket = serverSocket.accept();
+                dispatch(socket);
+            }
+        }
+        catch (IOException e)
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                // We caused this exception
+                return;
+            }
+            RMIException rmiException = new RMIException(e.getMessage(), e.getCause());
+            rmiException.printStackTrace();
+            listen_error(rmiException);
+            isStarted = false;
+        }
+    }
+
+    /** Hands an accepted connection to the threads chosen by the execution
+     policy for its call.
+
+     <p>
+     While any method runs inline or on the CPU pool, the call is read on the
+     listening thread, as far as it has already arrived: a stub sends its call
+     whole, without waiting for the skeleton. The listening thread never
+     waits for bytes. If the call has not arrived, or not all of it, the
+     connection gets a thread of its own, which reads the rest of the call
+     and runs it.
+     */
+    private void dispatch(Socket socket)
+    {
+        ExecutionPolicy policy = skeletonService.executionPolicy;
+        ObjectOutputStream oos;
+        Shuttle shuttle;
+        try
+        {
+            InputStream in = socket.getInputStream();
+            if (!policy.readsOnListener() || in.available() == 0)
+            {
+                startThread(createHandler(c, server, socket, in));
+                return;
+            }
+            oos = new ObjectOutputStream(socket.getOutputStream());
+            oos.flush();
+            ArrivedInput arrived = new ArrivedInput(in);
+            try
+            {
+                ObjectInputStream ois = new ObjectInputStream(arrived);
+                shuttle = (Shuttle) ois.readObject();
+                shuttle.received = System.nanoTime();
+            }
+            catch (ArrivedInput.Incomplete e)
+            {
+                ObjectOutputStream output = oos;
+                startThread(() -> readAndServe(socket, output, arrived.replay()));
+                return;
+            }
+        }
+        catch (ClassNotFoundException | IOException e)
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException closing) { }
+            service_error(new RMIException(e.getMessage(), e.getCause()));
+            return;
+        }
+
+        Method method = null;
+        try
+        {
+            if (!shuttle.cancel) method = skeletonService.findMethod(shuttle, c);
+        }
+        catch (RMIException e)
+        {
+            // Reported by the service thread.
+        }
+        Execution execution = shuttle.cancel ? Execution.INLINE
+            : method == null ? Execution.BLOCKING : policy.executionOf(method);
+        switch (execution)
+        {
+            case INLINE:
+                serveInline(socket, oos, shuttle, method);
+                break;
+            case CPU:
+                cpuPool.execute(() -> serve(socket, oos, shuttle));
+                break;
+            default:
+                startThread(() -> serve(socket, oos, shuttle));
+        }
+    }
+
+    /** Stream reading only the bytes which have already arrived, and
+     recording them, so that the listening thread can read a call without
+     waiting for it. */
+    private static class ArrivedInput extends InputStream
+    {
+        /** Thrown when a read would wait for bytes. */
+        static class Incomplete extends IOException
+        {
+            Incomplete()
+            {
+                super("call not fully arrived");
+            }
+        }
+
+        private final InputStream in;
+        private final ByteArrayOutputStream consumed = new ByteArrayOutputStream();
+
+        ArrivedInput(InputStream in)
+        {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if (in.available() <= 0) throw new Incomplete();
+            int b = in.read();
+            if (b >= 0) consumed.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0) return 0;
+            int available = in.available();
+            if (available <= 0) throw new Incomplete();
+            int n = in.read(b, off, Math.min(len, available));
+            if (n > 0) consumed.write(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            return in.available();
+        }
+
+        /** Returns a stream of the bytes read so far followed by the rest of
+         the connection. */
+        InputStream replay()
+        {
+            return new SequenceInputStream(new ByteArrayInputStream(consumed.toByteArray()), in);
+        }
+    }
+
+    /** Runs a task on an idle worker, or else on a new thread. */
+    private void startThread(Runnable runnable)
+    {
+        Workers workers = this.workers;
+        if (workers != null && workers.execute(runnable)) return;
+        Thread thread = new Thread(runnable);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /** Runs a call on the listening thread. If the call is still running
+     after the stall threshold of the execution policy, a new listening
+     thread takes over accepting connections. */
+    private void serveInline(Socket socket, ObjectOutputStream oos, Shuttle shuttle, Method method)
+    {
+        Thread listener = Thread.currentThread();
+        TimingWheel.Timeout watchdog = method == null ? null
+            : TimingWheel.shared().schedule(() -> replaceListener(listener, method),
+                skeletonService.executionPolicy.stallNanos(), TimeUnit.NANOSECONDS);
+        try
+        {
+            serve(socket, oos, shuttle);
+        }
+        finally
+        {
+            if (watchdog != null) watchdog.cancel();
+        }
+    }
+
+    /** Starts a new listening thread in place of one held up by an inline
+     call of <code>method</code>. The old thread exits once the call returns,
+     and is joined by <code>stop</code> like a service thread. */
+    private void replaceListener(Thread stalled, Method method)
+    {
+        synchronized (listenerLock)
+        {
+            if (listenerThread != stalled || serverSocket.isClosed()) return;
+            skeletonService.executionPolicy.stalled(method);
+            threads.add(stalled);
+            Thread listener = new Thread(this::listen);
+            listenerThread = listener;
+            listener.start();
+        }
+    }
+
     private InetSocketAddress determineAddress(boolean isLocalHost, InetSocketAddress socketAddress)
         throws UnknownHostException, RMIException
     {
@@ -280,23 +555,35 @@ public class Skeleton<T>
         }
         try
         {
-            for (Thread thread : this.threads) thread.join();
-            this.threads.clear();
-            if (this.listenerThread != null)
+            joinThreads();
+            Thread listener;
+            synchronized (listenerLock)
             {
-                if (this.serverSocket != null)
-                {
-                    this.serverSocket.close();
-                }
-                else
+                listener = this.listenerThread;
+                if (listener != null)
                 {
+                    // Interrupted first, so that the listener takes the
+                    // failure of accept for the stop it is.
+                    listener.interrupt();
+                    if (this.serverSocket != null) this.serverSocket.close();
                 }
-                this.listenerThread.interrupt();
-                this.listenerThread.join();
             }
+            if (listener != null) listener.join();
             else
             {
             }
+            // Calls accepted meanwhile, and listening threads replaced while
+            // running an inline call.
+            joinThreads();
+            if (workers != null)
+            {
+                workers.close();
+                workers.join();
+                workers = null;
+            }
+            cpuPool.shutdown();
+            cpuPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            for (Mailbox mailbox : closeMailboxes()) mailbox.join();
             this.isStarted = false;
             stopped(null);
         }
@@ -308,41 +595,293 @@ public class Skeleton<T>
 
     }
 
-    Runnable createHandler(Lock lock, Condition methodInvoking, int currentlyInvoking, Class<T> c,
-                           T server, Socket socket)
+    private void joinThreads() throws InterruptedException
     {
-        Runnable runnable = () -> {
-            try {
-                Thread current = Thread.currentThread();
-                ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
-                oos.flush();
-                ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
-                Shuttle shuttle = (Shuttle) ois.readObject();
+        for (Thread thread = threads.poll() ; thread != null ; thread = threads.poll())
+            thread.join();
+    }
 
-                // handle a call from Stub for a methodCall
-                skeletonService.handleMethodCall(lock, methodInvoking, currentlyInvoking, c,
-                    server, socket, oos, shuttle);
-            }
-            catch (ClassNotFoundException e)
+    /** Stops the actor and partition threads, if any, once the invocations
+     posted to them have run. Returns their mailboxes. */
+    private List<Mailbox> closeMailboxes()
+    {
+        List<Mailbox> closed = new ArrayList<>();
+        if (skeletonService.mailbox != null) closed.add(skeletonService.mailbox);
+        if (skeletonService.partitions != null) closed.addAll(Arrays.asList(skeletonService.partitions));
+        skeletonService.mailbox = null;
+        skeletonService.partitions = null;
+        for (Mailbox mailbox : closed) mailbox.close();
+        return closed;
+    }
+
+    Runnable createHandler(Class<T> c, T server, Socket socket, InputStream in)
+    {
+        Runnable runnable = () -> {
+            ObjectOutputStream oos;
+            try
             {
-                RMIException rmiException = new RMIException(e.getMessage(), e.getCause());
-                service_error(rmiException);
+                oos = new ObjectOutputStream(socket.getOutputStream());
+                oos.flush();
             }
             catch (IOException e)
             {
                 RMIException rmiException = new RMIException(e.getMessage(), e.getCause());
                 service_error(rmiException);
+                return;
             }
-            catch (RMIException e)
+            readAndServe(socket, oos, in);
+        };
+        return runnable;
+    }
+
+    /** Reads a call from a connection whose stream header has been sent, and
+     runs it. */
+    private void readAndServe(Socket socket, ObjectOutputStream oos, InputStream in)
+    {
+        try
+        {
+            Spinner.await(in, spinNanos());
+            ObjectInputStream ois = new ObjectInputStream(in);
+            Shuttle shuttle = (Shuttle) ois.readObject();
+            shuttle.received = System.nanoTime();
+            serve(socket, oos, shuttle);
+        }
+        catch (ClassNotFoundException e)
+        {
+            RMIException rmiException = new RMIException(e.getMessage(), e.getCause());
+            service_error(rmiException);
+        }
+        catch (IOException e)
+        {
+            RMIException rmiException = new RMIException(e.getMessage(), e.getCause());
+            service_error(rmiException);
+        }
+    }
+
+    /** Runs a call which has been read, or cancels the call it names. */
+    private void serve(Socket socket, ObjectOutputStream oos, Shuttle shuttle)
+    {
+        try {
+            if (shuttle.cancel)
             {
-                service_error(e);
+                skeletonService.cancel(shuttle.callId);
+                socket.close();
+                return;
             }
-            catch (Exception e)
-            {
 
-            }
-        };
-        return runnable;
+            // handle a call from Stub for a methodCall
+            skeletonService.handleMethodCall(c, server, socket, oos, shuttle);
+        }
+        catch (IOException e)
+        {
+            RMIException rmiException = new RMIException(e.getMessage(), e.getCause());
+            service_error(rmiException);
+        }
+        catch (RMIException e)
+        {
+            service_error(e);
+        }
+        catch (Exception e)
+        {
+
+        }
+    }
+
+    /** Returns the cache in which the skeleton memoizes the results of
+     <code>@Deterministic</code> methods. */
+    public MemoCache getMemoCache()
+    {
+        return skeletonService.memoCache;
+    }
+
+    /** Returns the coalescer which merges identical concurrent invocations of
+     <code>@Idempotent</code> methods. */
+    public InvocationCoalescer getCoalescer()
+    {
+        return skeletonService.coalescer;
+    }
+
+    /** Returns the dispatcher which admits received calls for invocation by
+     priority lane. */
+    public Dispatcher getDispatcher()
+    {
+        return skeletonService.dispatcher;
+    }
+
+    /** Returns the policy choosing the threads on which calls of each method
+     run. */
+    public ExecutionPolicy getExecutionPolicy()
+    {
+        return skeletonService.executionPolicy;
+    }
+
+    /** Sets the number of worker threads kept to read and run calls, and how
+     idle workers wait for them. With zero workers, or while every worker is
+     busy, each connection gets a thread of its own. The default is one
+     worker per processor, parking when idle. Takes effect when the skeleton
+     is next started.
+
+     @throws IllegalArgumentException If <code>count</code> is negative.
+     @throws NullPointerException If <code>strategy</code> is
+     <code>null</code>.
+     */
+    public synchronized void setWorkers(int count, WaitStrategy strategy)
+    {
+        if (count < 0) throw new IllegalArgumentException("count < 0");
+        if (strategy == null) throw new NullPointerException("strategy == null");
+        this.workerCount = count;
+        this.waitStrategy = strategy;
+    }
+
+    /** Sets the time, in microseconds, for which threads reading calls spin
+     waiting for a call to arrive on a new connection before they block. The
+     default is the time given by the <code>@SpinWait</code> annotation of
+     the remote interface, or no spinning without one. Idle workers spin as
+     well with <code>WaitStrategy.BUSY_SPIN</code>, given to
+     <code>setWorkers</code>.
+
+     @throws IllegalArgumentException If <code>micros</code> is negative.
+     */
+    public void setSpinWait(long micros)
+    {
+        if (micros < 0) throw new IllegalArgumentException("micros < 0");
+        this.spinNanos = TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    private long spinNanos()
+    {
+        long nanos = spinNanos;
+        return nanos >= 0 ? nanos : Spinner.budgetNanos(c);
+    }
+
+    /** Sets whether the skeleton runs its server object as an actor.
+
+     <p>
+     In actor mode, every invocation is posted to a mailbox and run by a
+     single dedicated thread, in the order the calls were received, so that
+     the server object needs no synchronization. Concurrency modes declared
+     on the server object are then ignored. The mode takes effect when the
+     skeleton is next started.
+
+     @param enabled <code>true</code> to run the server object as an actor.
+     */
+    public synchronized void setActorMode(boolean enabled)
+    {
+        this.actorMode = enabled;
+    }
+
+    /** Returns the mailbox of the running actor thread, or <code>null</code>
+     if the skeleton is not running in actor mode. */
+    public Mailbox getMailbox()
+    {
+        return skeletonService.mailbox;
+    }
+
+    /** Returns the pool of server objects of a skeleton created with
+     <code>pooled</code>, or <code>null</code> if the skeleton has a single
+     server object. */
+    public ServerPool<T> getServerPool()
+    {
+        return skeletonService.pool;
+    }
+
+    /** Sets the number of partition threads running the calls of methods with
+     a <code>@PartitionKey</code> parameter. The default is the number of
+     processors. Takes effect when the skeleton is next started. Has no
+     effect in actor mode, where all calls run on the actor thread.
+
+     @throws IllegalArgumentException If <code>count</code> is not positive.
+     */
+    public synchronized void setPartitions(int count)
+    {
+        if (count <= 0) throw new IllegalArgumentException("count <= 0");
+        this.partitionCount = count;
+    }
+
+    /** Returns the mailboxes of the running partition threads, or an empty
+     list if calls are not partitioned. */
+    public List<Mailbox> getPartitions()
+    {
+        Mailbox[] partitions = skeletonService.partitions;
+        return partitions == null ? Collections.<Mailbox>emptyList()
+            : Collections.unmodifiableList(Arrays.asList(partitions));
+    }
+
+    /** Sets the limits of a bulkhead, creating it if there is none with the
+     given name.
+
+     @param name The name of the bulkhead.
+     @param maxConcurrent The maximum number of invocations of the methods in
+     the bulkhead running at once.
+     @param maxQueued The maximum number of calls waiting to run.
+     @return The compartment of the bulkhead.
+     @throws NullPointerException If <code>name</code> is <code>null</code>.
+     @throws IllegalArgumentException If <code>maxConcurrent</code> is not
+     positive, or if <code>maxQueued</code> is
+     negative.
+     */
+    public Compartment setBulkhead(String name, int maxConcurrent, int maxQueued)
+    {
+        if (name == null) throw new NullPointerException("name == null");
+        return skeletonService.compartments.compute(name, (n, compartment) -> {
+            if (compartment == null) return new Compartment(n, maxConcurrent, maxQueued);
+            compartment.setLimits(maxConcurrent, maxQueued);
+            return compartment;
+        });
+    }
+
+    /** Places the methods of the remote interface with the given name, all
+     overloads included, in a bulkhead, replacing any bulkhead declared for
+     them.
+
+     @throws IllegalArgumentException If the interface has no method with the
+     given name, or if there is no bulkhead with
+     the given name.
+     */
+    public void assignBulkhead(String methodName, String bulkheadName)
+    {
+        Compartment compartment = bulkheadNamed(bulkheadName);
+        boolean found = false;
+        for (Method method : c.getMethods())
+        {
+            if (!method.getName().equals(methodName)) continue;
+            skeletonService.methodCompartments.put(method, compartment);
+            found = true;
+        }
+        if (!found) throw new IllegalArgumentException("no method named " + methodName);
+    }
+
+    /** Places a method of the remote interface in a bulkhead, replacing any
+     bulkhead declared for it. Unlike <code>assignBulkhead(String,
+     String)</code>, this places one overload alone.
+
+     @throws NullPointerException If <code>method</code> is
+     <code>null</code>.
+     @throws IllegalArgumentException If <code>method</code> is not a method
+     of the remote interface, or if there is no
+     bulkhead with the given name.
+     */
+    public void assignBulkhead(Method method, String bulkheadName)
+    {
+        if (method == null) throw new NullPointerException("method == null");
+        Compartment compartment = bulkheadNamed(bulkheadName);
+        if (!Arrays.asList(c.getMethods()).contains(method))
+            throw new IllegalArgumentException(method + " is not a remote method");
+        skeletonService.methodCompartments.put(method, compartment);
+    }
+
+    private Compartment bulkheadNamed(String name)
+    {
+        Compartment compartment = skeletonService.compartments.get(name);
+        if (compartment == null) throw new IllegalArgumentException("no bulkhead named " + name);
+        return compartment;
+    }
+
+    /** Returns the compartment of the bulkhead with the given name, or
+     <code>null</code> if there is none. */
+    public Compartment getBulkhead(String name)
+    {
+        return skeletonService.compartments.get(name);
     }
 
     InetAddress getAddress()
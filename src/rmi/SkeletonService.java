@@ -2,24 +2,53 @@ package rmi;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 
 public class SkeletonService<T> {
+    final MemoCache memoCache = new MemoCache(MemoCache.DEFAULT_MAX_BYTES);
+    final InvocationCoalescer coalescer = new InvocationCoalescer();
+    final Dispatcher dispatcher = new Dispatcher();
+    final ExecutionPolicy executionPolicy = new ExecutionPolicy();
+    private final ServerLock serverLock = new ServerLock();
+    /** Mailbox of the actor thread calling the server object, or
+     <code>null</code> if service threads call it themselves. */
+    volatile Mailbox mailbox;
+    /** Mailboxes of the partition threads running calls by key, or
+     <code>null</code> if calls are not partitioned. */
+    volatile Mailbox[] partitions;
+    /** Server objects leased to invocations, or <code>null</code> if the
+     skeleton has a single shared server object. */
+    ServerPool<T> pool;
+    /** Index of the <code>@PartitionKey</code> parameter of each method of the
+     remote interface, or -1 if it has none. */
+    private final ConcurrentHashMap<Method, Integer> partitionKeys = new ConcurrentHashMap<>();
+    /** Bulkhead compartments, by name. */
+    final ConcurrentHashMap<String, Compartment> compartments = new ConcurrentHashMap<>();
+    /** Compartment of each method in a bulkhead. */
+    final ConcurrentHashMap<Method, Compartment> methodCompartments = new ConcurrentHashMap<>();
+    final AtomicInteger active = new AtomicInteger();
+    private final ConcurrentHashMap<Long, RunningCall> running = new ConcurrentHashMap<>();
+
     public SkeletonService() {}
 
 
 
-    void handleMethodCall(Lock lock, Condition methodInvoking, int currentlyInvoking, Class<T> c,
-                          T server, Socket socket, ObjectOutputStream oos, Shuttle shuttle)
+    void handleMethodCall(Class<T> c, T server, Socket socket, ObjectOutputStream oos,
+                          Shuttle shuttle)
         throws IllegalAccessException, IOException, InstantiationException,
-        RMIException, InvocationTargetException, InterruptedException {
+        RMIException, ReflectiveOperationException, InterruptedException {
         try
         {
             // Get the method the Client wants to call
@@ -31,57 +60,325 @@ public class SkeletonService<T> {
                     ? "shuttle == null" : "method == null");
                 Return ret = new Return(null, null, new InvocationTargetException(rmiException),
                     null);
-                oos.writeObject(ret);
+                oos.writeObject(withLoad(ret));
                 socket.close();
                 throw rmiException;
             }
-            if (shuttle.args == null)
-            {
-                Object returnValue = method.invoke(server, new Object[0]);
-                Return ret = new Return(method.getGenericReturnType(), returnValue, null, null);
-                oos.writeObject(ret);
-                socket.close();
-                return;
-            }
-            else
+            if (shuttle.isExpired())
+                throw new DeadlineExceededException("deadline passed before invocation");
+            Object returnValue;
+            // Set if the server method returned a future to complete the
+            // call later; the call keeps its admission until then.
+            CompletionStage<?> pending = null;
+            Runnable release = null;
+            RunningCall call = new RunningCall(shuttle);
+            running.put(shuttle.callId, call);
+            Compartment compartment = methodCompartments.get(method);
+            try
             {
-                Object[] arguments = new Object[shuttle.args.length];
-                if (arguments != null)
+                if (compartment != null) compartment.acquire();
+                long start = System.nanoTime();
+                try
                 {
-                    for (int i = 0 ; i < shuttle.args.length ; i++)
+                    Dispatcher.Client client =
+                        dispatcher.acquire(laneOf(method, shuttle), clientOf(socket, shuttle),
+                            executionPolicy.expectedNanos(method));
+                    active.incrementAndGet();
+                    long invoked = System.nanoTime();
+                    try
                     {
-                        Object arg = shuttle.args[i].getValue();
-
-                        arguments[i] = arg;
+                        // In actor mode the server object is only called from
+                        // one thread and needs no lock. Partitioned calls are
+                        // serialized per key instead, and pooled server
+                        // objects are never shared.
+                        Lock lock = pool == null && mailbox == null && partitionKey(method) < 0
+                            ? serverLock.lockFor(method, server) : null;
+                        if (lock == null)
+                        {
+                            returnValue = invoke(method, server, shuttle, call);
+                        }
+                        else
+                        {
+                            if (!lock.tryLock()) Blocking.await(lock::lockInterruptibly);
+                            try
+                            {
+                                returnValue = invoke(method, server, shuttle, call);
+                            }
+                            finally
+                            {
+                                lock.unlock();
+                            }
+                        }
+                        if (returnValue instanceof CompletionStage
+                            && CompletionStage.class.isAssignableFrom(method.getReturnType()))
+                        {
+                            pending = (CompletionStage<?>) returnValue;
+                            release = () -> {
+                                active.decrementAndGet();
+                                dispatcher.release(client, System.nanoTime() - invoked);
+                                if (compartment != null) compartment.release(System.nanoTime() - start);
+                            };
+                        }
+                    }
+                    finally
+                    {
+                        long elapsed = System.nanoTime() - invoked;
+                        // An asynchronous call holds its thread only until
+                        // the server method returns its future.
+                        executionPolicy.record(method, elapsed);
+                        if (pending == null)
+                        {
+                            active.decrementAndGet();
+                            dispatcher.release(client, elapsed);
+                        }
                     }
                 }
-                Object returnValue = method.invoke(server, arguments);
-                Return ret = new Return(method.getGenericReturnType(), returnValue, null, null);
-                oos.writeObject(ret);
-                socket.close();
+                finally
+                {
+                    if (pending == null && compartment != null)
+                        compartment.release(System.nanoTime() - start);
+                }
             }
+            catch (ReflectiveOperationException | IOException | RuntimeException
+                   | InterruptedException e)
+            {
+                if (call.isExpired())
+                    throw new DeadlineExceededException("deadline passed during invocation", e);
+                if (call.isInterrupted()) throw new RMIException("call cancelled", e);
+                throw e;
+            }
+            finally
+            {
+                running.remove(shuttle.callId, call);
+                call.finish();
+            }
+            if (pending != null)
+            {
+                // The service thread is free to go; whichever thread
+                // completes the future sends the response.
+                Runnable admitted = release;
+                pending.whenComplete((value, failure) -> {
+                    admitted.run();
+                    respond(method, socket, oos, value, failure);
+                });
+                return;
+            }
+            Return ret = new Return(method.getReturnType(), returnValue, null, null);
+            oos.writeObject(withLoad(ret));
+            socket.close();
         }
         catch (IOException e)
         {
             RMIException rmiException = new RMIException(e.getMessage(), e.getCause());
             // TODO I CHANGED THIS from third praram  ITE constructor(e)
-            oos.writeObject(new Return(null, null, new InvocationTargetException(e), null));
+            oos.writeObject(withLoad(new Return(null, null, new InvocationTargetException(e), null)));
             socket.close();
             throw rmiException;
         }
         catch (RMIException e)
         {
-            oos.writeObject(new Return(null, null, null, e));
+            oos.writeObject(withLoad(new Return(null, null, null, e)));
             socket.close();
         }
         catch (Exception e)
         {
-            oos.writeObject(new Return(null, null, new InvocationTargetException(e), null));
+            oos.writeObject(withLoad(new Return(null, null, new InvocationTargetException(e), null)));
             socket.close();
             throw e;
         }
     }
 
+    /** Creates the bulkhead compartments declared with
+     <code>@Bulkhead</code> on the methods of the remote interface. */
+    void declareBulkheads(Class<?> c)
+    {
+        for (Method method : c.getMethods())
+        {
+            Bulkhead bulkhead = method.getAnnotation(Bulkhead.class);
+            if (bulkhead == null) continue;
+            String name = bulkhead.value().isEmpty() ? method.getName() : bulkhead.value();
+            Compartment compartment = compartments.computeIfAbsent(name,
+                n -> new Compartment(n, bulkhead.maxConcurrent(), bulkhead.maxQueued()));
+            methodCompartments.put(method, compartment);
+        }
+    }
+
+    /** Returns the index of the <code>@PartitionKey</code> parameter of a
+     method, or -1 if it has none or calls are not partitioned. */
+    private int partitionKey(Method method)
+    {
+        if (partitions == null) return -1;
+        Integer index = partitionKeys.get(method);
+        return index == null ? -1 : index;
+    }
+
+    /** Records the <code>@PartitionKey</code> parameters of the methods of the
+     remote interface. Returns <code>true</code> if any method has one. */
+    boolean declarePartitionKeys(Class<?> c)
+    {
+        for (Method method : c.getMethods())
+        {
+            Annotation[][] annotations = method.getParameterAnnotations();
+            for (int i = 0 ; i < annotations.length && !partitionKeys.containsKey(method) ; i++)
+            {
+                for (Annotation annotation : annotations[i])
+                {
+                    if (annotation instanceof PartitionKey) partitionKeys.put(method, i);
+                }
+            }
+        }
+        return !partitionKeys.isEmpty();
+    }
+
+    /** Returns the partition of a key among <code>n</code>. Keys are hashed
+     from their serialized form, as by <code>HashRing</code>, so that equal
+     keys share a partition whether or not their class overrides
+     <code>hashCode</code>. */
+    static int partitionOf(Object key, int n)
+    {
+        long h;
+        try
+        {
+            h = HashRing.hash(Marshal.encode(new Object[] {key}));
+        }
+        catch (IOException e)
+        {
+            // Keys arrive serialized, so they serialize again.
+            h = Arrays.deepHashCode(new Object[] {key});
+        }
+        return Math.floorMod(h, n);
+    }
+
+    /** Interrupts the invocation of the call with the given identifier, if it
+     is still running. */
+    void cancel(long callId)
+    {
+        RunningCall call = running.get(callId);
+        if (call != null) call.cancel();
+    }
+
+    /** Returns the lane in which a call waits for admission: the lane set by
+     the client, or else the <code>@Priority</code> of the method. */
+    private static Lane laneOf(Method method, Shuttle shuttle)
+    {
+        if (shuttle.lane != null) return shuttle.lane;
+        Priority priority = method.getAnnotation(Priority.class);
+        return priority == null ? Lane.NORMAL : priority.value();
+    }
+
+    /** Returns the key identifying the client of a call: the identifier sent
+     by the client, or else its network address. */
+    private static Object clientOf(Socket socket, Shuttle shuttle)
+    {
+        return shuttle.clientId != null ? shuttle.clientId : socket.getInetAddress();
+    }
+
+    /** Attaches the current number of executing calls to a response as a
+     load hint for the client. */
+    private Return withLoad(Return ret)
+    {
+        ret.load = active.get();
+        return ret;
+    }
+
+    /** Sends the outcome of an asynchronous server method once its future
+     completes, and closes the connection. */
+    private void respond(Method method, Socket socket, ObjectOutputStream oos, Object value,
+                         Throwable failure)
+    {
+        try
+        {
+            if (failure instanceof CompletionException && failure.getCause() != null)
+                failure = failure.getCause();
+            // Wrapped twice, as for an exception thrown by Method.invoke.
+            Return ret = failure == null
+                ? new Return(method.getReturnType(), value, null, null)
+                : new Return(null, null,
+                    new InvocationTargetException(new InvocationTargetException(failure)), null);
+            oos.writeObject(withLoad(ret));
+        }
+        catch (IOException e)
+        {
+            // The client is gone; there is no one left to tell.
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing more will be written.
+            }
+        }
+    }
+
+    /** Calls the server object, going through the invocation coalescer for
+     <code>@Idempotent</code> methods and the memoization cache for
+     <code>@Deterministic</code> methods, and through the mailbox of the
+     actor or of the key's partition if any. The arguments are only decoded
+     if the server object is actually called. <code>current</code> tracks
+     the call on the current thread. */
+    Object invoke(Method method, T server, Shuttle shuttle, RunningCall current)
+        throws ReflectiveOperationException, IOException
+    {
+        ServerCall call = () -> callServer(method, server, Marshal.decode(shuttle.arguments),
+            Workers.onWorkerThread());
+        Mailbox actor = mailbox;
+        Mailbox[] lanes = partitions;
+        int keyIndex = actor == null && lanes != null ? partitionKey(method) : -1;
+        if (actor != null || keyIndex >= 0)
+        {
+            // Decode on the service thread, leaving the actor or partition
+            // thread only the call itself.
+            call = () -> {
+                Object[] args = Marshal.decode(shuttle.arguments);
+                Mailbox target = actor != null ? actor : lanes[partitionOf(args[keyIndex], lanes.length)];
+                return target.call(() -> callServer(method, server, args, true));
+            };
+        }
+        boolean idempotent = method.isAnnotationPresent(Idempotent.class);
+        boolean deterministic = method.isAnnotationPresent(Deterministic.class);
+        if (!idempotent && !deterministic) return call.invoke();
+
+        ArgumentKey key = new ArgumentKey(method, shuttle.arguments);
+        if (idempotent)
+        {
+            ServerCall direct = call;
+            call = () -> coalescer.call(key, direct, current);
+        }
+        if (deterministic)
+        {
+            // Futures are not memoized themselves: one that fails later
+            // would be served to every later call.
+            return CompletionStage.class.isAssignableFrom(method.getReturnType())
+                ? memoCache.callAsync(key, call) : memoCache.call(key, call);
+        }
+        return call.invoke();
+    }
+
+    /** Calls a method of the server object, or of a pooled instance if the
+     skeleton has a pool. <code>reused</code> is <code>true</code> on worker,
+     actor and partition threads, which run calls one after another and may
+     keep a pinned instance. */
+    private Object callServer(Method method, T server, Object[] args, boolean reused)
+        throws ReflectiveOperationException
+    {
+        if (pool == null) return method.invoke(server, args);
+        T pinned = reused ? pool.pinned() : null;
+        if (pinned != null) return method.invoke(pinned, args);
+        T leased = pool.lease();
+        try
+        {
+            return method.invoke(leased, args);
+        }
+        finally
+        {
+            pool.release(leased);
+        }
+    }
+
     Method findMethod(Shuttle shuttle, Class<T> c)
         throws RMIException
     {
@@ -0,0 +1,27 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Makes threads waiting on calls of a remote interface, or of one of its
+ methods, spin before they block.
+
+ <p>
+ A stub calling the method spins for up to <code>micros</code> microseconds
+ waiting for the skeleton's reply, and only then blocks in the read. A
+ skeleton for an interface carrying the annotation likewise spins on each
+ new connection waiting for the call, unless set otherwise with
+ <code>Skeleton.setSpinWait</code>. Spinning spares the wake-up of a
+ blocked thread when the reply comes quickly, at the cost of a processor
+ kept busy meanwhile; it is meant for the few co-located calls for which
+ that trade is worth making.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface SpinWait
+{
+    /** Time, in microseconds, to spin before blocking. */
+    long micros();
+}
@@ -0,0 +1,60 @@
+package rmi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** Bounded spinning on streams, for the waits configured with
+ <code>@SpinWait</code>. */
+final class Spinner
+{
+    /** Spin times of methods, in nanoseconds, by the interface of the stub
+     through which they are called. An inherited method spins according to
+     the interface it is called through, so the same method can have
+     different spin times. */
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Method, Long>> budgets =
+        new ConcurrentHashMap<>();
+
+    private Spinner() { }
+
+    /** Returns the time, in nanoseconds, for which calls of
+     <code>method</code> through a stub for <code>c</code> spin: that given by
+     the method's annotation, or else by that of the interface. */
+    static long budgetNanos(Class<?> c, Method method)
+    {
+        ConcurrentHashMap<Method, Long> methods =
+            budgets.computeIfAbsent(c, k -> new ConcurrentHashMap<>());
+        return methods.computeIfAbsent(method, m -> {
+            SpinWait spin = m.getAnnotation(SpinWait.class);
+            if (spin == null) spin = c.getAnnotation(SpinWait.class);
+            if (spin == null) spin = m.getDeclaringClass().getAnnotation(SpinWait.class);
+            return spin == null ? 0 : TimeUnit.MICROSECONDS.toNanos(Math.max(0, spin.micros()));
+        });
+    }
+
+    /** Returns the time, in nanoseconds, given by the annotation of
+     interface <code>c</code>. */
+    static long budgetNanos(Class<?> c)
+    {
+        SpinWait spin = c.getAnnotation(SpinWait.class);
+        return spin == null ? 0 : TimeUnit.MICROSECONDS.toNanos(Math.max(0, spin.micros()));
+    }
+
+    /** Spins until <code>in</code> has bytes to read without blocking, for at
+     most <code>nanos</code> nanoseconds. Returns <code>true</code> if bytes
+     arrived in time. Returns at once if <code>nanos</code> is 0.
+     */
+    static boolean await(InputStream in, long nanos) throws IOException
+    {
+        if (nanos <= 0) return in.available() > 0;
+        long start = System.nanoTime();
+        while (in.available() == 0)
+        {
+            if (System.nanoTime() - start >= nanos) return false;
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+}
@@ -4,6 +4,7 @@ package rmi;
 import java.io.Serializable;
 import java.lang.reflect.*;
 import java.net.*;
+import java.util.Collection;
 
 /** RMI stub factory.
 
@@ -164,6 +165,178 @@ public abstract class Stub implements Serializable
     }
 
 
+    /** Creates a stub spreading its calls over a set of equivalent skeletons.
+
+     <p>
+     Each call is sent to one of the skeletons, chosen by comparing two
+     randomly drawn skeletons on their observed latency, the calls this stub
+     has in flight to them and the load they report in their responses.
+     Skeletons failing repeatedly are ejected from the choice for a while.
+     Two such stubs are equal if they implement the same interface and carry
+     the same addresses in the same order.
+
+     @param c A <code>Class</code> object representing the interface
+     implemented by the remote object.
+     @param addresses The network addresses of the skeletons.
+     @return The stub created.
+     @throws NullPointerException If any argument or address is
+     <code>null</code>.
+     @throws IllegalArgumentException If <code>addresses</code> is empty.
+     @throws Error If <code>c</code> does not represent a remote interface.
+     */
+    public static <T> T createBalanced(Class<T> c, Collection<InetSocketAddress> addresses)
+    {
+        return createBalanced(c, addresses, HedgePolicy.DEFAULT_PERCENT);
+    }
+
+    /** Creates a stub spreading its calls over a set of equivalent skeletons,
+     with a given budget for hedged calls.
+
+     <p>
+     The stub behaves as one created by
+     <code>createBalanced(Class, Collection)</code>. In addition, a call to a
+     method marked <code>@Idempotent</code> which has not been answered
+     within the 95th percentile of recently observed latencies is sent again
+     to another skeleton. The first response is used and the other call is
+     cancelled. At most about <code>hedgePercent</code> percent of calls are
+     hedged.
+
+     @param c A <code>Class</code> object representing the interface
+     implemented by the remote object.
+     @param addresses The network addresses of the skeletons.
+     @param hedgePercent The hedging budget, in percent of calls. Zero
+     disables hedging.
+     @return The stub created.
+     @throws NullPointerException If any argument or address is
+     <code>null</code>.
+     @throws IllegalArgumentException If <code>addresses</code> is empty, or
+     if <code>hedgePercent</code> is not between
+     0 and 100.
+     @throws Error If <code>c</code> does not represent a remote interface.
+     */
+    public static <T> T createBalanced(Class<T> c, Collection<InetSocketAddress> addresses,
+                                       double hedgePercent)
+    {
+        if (c == null) throw new NullPointerException("c is null");
+        return createWithHandler(c, new BalancedInvocationHandler<>(c,
+            new LoadBalancer(addresses), new HedgePolicy(hedgePercent)));
+    }
+
+    /** Creates a stub sending reads to replicas and writes to a primary.
+
+     <p>
+     Calls to methods marked <code>@ReadOnly</code> are spread over the
+     replicas as by a stub created with
+     <code>createBalanced(Class, Collection)</code>, and are sent to the
+     primary if no replica accepts the connection. All other calls are sent
+     to the primary. Two such stubs are equal if they implement the same
+     interface and carry the same primary and replica addresses.
+
+     @param c A <code>Class</code> object representing the interface
+     implemented by the remote object.
+     @param primary The network address of the primary skeleton.
+     @param replicas The network addresses of the replica skeletons.
+     @return The stub created.
+     @throws NullPointerException If any argument or address is
+     <code>null</code>.
+     @throws IllegalArgumentException If <code>replicas</code> is empty.
+     @throws Error If <code>c</code> does not represent a remote interface.
+     */
+    public static <T> T createReplicated(Class<T> c, InetSocketAddress primary,
+                                         Collection<InetSocketAddress> replicas)
+    {
+        return createReplicated(c, primary, replicas, 0);
+    }
+
+    /** Creates a stub sending reads to replicas and writes to a primary, with
+     read-your-writes consistency.
+
+     <p>
+     The stub behaves as one created by
+     <code>createReplicated(Class, InetSocketAddress, Collection)</code>,
+     except that for <code>sessionMillis</code> milliseconds after each call
+     to a method not marked <code>@ReadOnly</code>, reads made through this
+     stub are also sent to the primary. This lets the caller observe its own
+     writes while the replicas catch up.
+
+     @param c A <code>Class</code> object representing the interface
+     implemented by the remote object.
+     @param primary The network address of the primary skeleton.
+     @param replicas The network addresses of the replica skeletons.
+     @param sessionMillis The time after a write during which reads are sent
+     to the primary. Zero disables read-your-writes.
+     @return The stub created.
+     @throws NullPointerException If any argument or address is
+     <code>null</code>.
+     @throws IllegalArgumentException If <code>replicas</code> is empty, or
+     if <code>sessionMillis</code> is negative.
+     @throws Error If <code>c</code> does not represent a remote interface.
+     */
+    public static <T> T createReplicated(Class<T> c, InetSocketAddress primary,
+                                         Collection<InetSocketAddress> replicas,
+                                         long sessionMillis)
+    {
+        if (c == null) throw new NullPointerException("c is null");
+        return createWithHandler(c, new ReplicatedInvocationHandler<>(c, primary,
+            new LoadBalancer(replicas), new HedgePolicy(HedgePolicy.DEFAULT_PERCENT),
+            sessionMillis));
+    }
+
+    /** Creates a stub routing each call to a shard on a consistent-hash
+     ring.
+
+     <p>
+     Every method of the interface must have exactly one parameter marked
+     <code>@ShardKey</code>. Each call is sent to the skeleton which the ring
+     assigns to the value of that parameter. Skeletons may be added to or
+     removed from the ring while the stub is in use. Two such stubs are equal
+     if they implement the same interface and their rings hold the same
+     skeletons.
+
+     @param c A <code>Class</code> object representing the interface
+     implemented by the remote object.
+     @param ring The ring assigning keys to skeletons.
+     @return The stub created.
+     @throws NullPointerException If either argument is <code>null</code>.
+     @throws IllegalArgumentException If the ring is empty, or if a method of
+     <code>c</code> does not have exactly one
+     <code>@ShardKey</code> parameter.
+     @throws Error If <code>c</code> does not represent a remote interface.
+     */
+    public static <T> T createSharded(Class<T> c, HashRing ring)
+    {
+        if (c == null) throw new NullPointerException("c is null");
+        if (!Validation.isRemoteInterface(c))
+            throw new Error("Class Does Not Represent a Remote Interface");
+        return createWithHandler(c, new ShardedInvocationHandler<>(c, ring));
+    }
+
+    /** Creates a group stub, invoking each call on every skeleton of a group
+     in parallel.
+
+     <p>
+     Calls are made through the methods of <code>GroupStub</code>, which
+     complete once all, the first, or a quorum of the skeletons have
+     answered successfully, and cancel the calls still in flight.
+
+     @param c A <code>Class</code> object representing the interface
+     implemented by the remote object.
+     @param addresses The network addresses of the skeletons.
+     @return The group stub created.
+     @throws NullPointerException If any argument or address is
+     <code>null</code>.
+     @throws IllegalArgumentException If <code>addresses</code> is empty.
+     @throws Error If <code>c</code> does not represent a remote interface.
+     */
+    public static <T> GroupStub<T> createGroup(Class<T> c,
+                                               Collection<InetSocketAddress> addresses)
+    {
+        if (c == null) throw new NullPointerException("c is null");
+        if (!Validation.isRemoteInterface(c))
+            throw new Error("Class Does Not Represent a Remote Interface");
+        return new GroupStub<>(c, addresses);
+    }
+
     private static <T> T performCreate(Class<T> c, Skeleton<T> skeleton,
                                        InetSocketAddress socketAddress)
         throws InvocationTargetException, Throwable
@@ -191,6 +364,33 @@ public abstract class Stub implements Serializable
         }
     }
 
+    /** Creates a stub forwarding its calls to the given handler.
+
+     <p>
+     This is used by the other stub factories in this package, whose handlers
+     choose the skeleton to contact on each call rather than carrying a single
+     fixed address.
+
+     @throws Error If <code>c</code> does not represent a remote interface, or
+     if an object implementing this interface cannot be
+     dynamically created.
+     */
+    static <T> T createWithHandler(Class<T> c, RemoteInvocationHandler<T> handler)
+    {
+        if (!Validation.isRemoteInterface(c))
+            throw new Error("Class Does Not Represent a Remote Interface");
+        try
+        {
+            Class<?> proxyRemoteInterface = ROR.getProxyClass(c.getClassLoader(), c);
+            return (T) proxyRemoteInterface.getConstructor(InvocationHandler.class)
+                .newInstance(handler);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new Error("could not create stub for " + c.getName(), e);
+        }
+    }
+
 
 
 }
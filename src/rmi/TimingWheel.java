@@ -0,0 +1,227 @@
+package rmi;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/** Hashed timing wheel for call deadlines and hedging delays.
+
+ <p>
+ Time is divided into ticks, and the wheel is a ring of buckets, one per
+ tick. A timeout lands in the bucket of the tick at which it expires, with a
+ count of the whole turns of the wheel remaining before then. A single worker
+ thread advances the wheel one tick at a time and expires the timeouts whose
+ turn has come. Scheduling and cancelling a timeout are both O(1): new and
+ cancelled timeouts are handed to the worker through lock-free queues, and
+ the worker links and unlinks them from the buckets.
+
+ <p>
+ Expiry tasks run on the worker thread and must be short; they typically
+ close a socket, interrupt a thread or hand work to an executor. The worker
+ parks while no timeouts are pending.
+ */
+final class TimingWheel
+{
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+    private static final TimingWheel shared =
+        new TimingWheel(TimeUnit.MILLISECONDS.toNanos(1), 1024, "rmi-timing-wheel");
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final ConcurrentLinkedQueue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+    private long tick = 0;
+
+    /** Creates a wheel with the given tick duration and number of buckets,
+     which must be a power of two, and starts its worker thread. */
+    TimingWheel(long tickNanos, int buckets, String name)
+    {
+        if (tickNanos <= 0) throw new IllegalArgumentException("tickNanos <= 0");
+        if (buckets <= 0 || (buckets & (buckets - 1)) != 0)
+            throw new IllegalArgumentException("buckets is not a power of two");
+        this.tickNanos = tickNanos;
+        this.wheel = new Bucket[buckets];
+        for (int i = 0 ; i < buckets ; i++) wheel[i] = new Bucket();
+        this.mask = buckets - 1;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /** Returns the wheel shared by all stubs and skeletons, with a tick of
+     one millisecond. */
+    static TimingWheel shared()
+    {
+        return shared;
+    }
+
+    /** Schedules <code>task</code> to run once <code>delay</code> has
+     elapsed. The task runs no earlier than the delay, and at most about one
+     tick later. */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit)
+    {
+        if (task == null) throw new NullPointerException("task == null");
+        Timeout timeout = new Timeout(task,
+            System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay)));
+        scheduled.add(timeout);
+        if (pending.getAndIncrement() == 0) LockSupport.unpark(worker);
+        return timeout;
+    }
+
+    /** Returns the number of timeouts scheduled and neither expired nor
+     cancelled. */
+    int pending()
+    {
+        return pending.get();
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            if (pending.get() == 0)
+            {
+                purgeCancelled();
+                LockSupport.park(this);
+                tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+            }
+            long wake = startTime + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) - wake < 0) LockSupport.parkNanos(this, wake - now);
+
+            purgeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void transferScheduled()
+    {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null)
+        {
+            if (timeout.state != Timeout.WAITING) continue;
+            long due = timeout.deadline / tickNanos;
+            timeout.rounds = Math.max(0, (due - tick) / wheel.length);
+            wheel[(int) (Math.max(due, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void purgeCancelled()
+    {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null)
+        {
+            if (timeout.bucket != null) timeout.bucket.remove(timeout);
+        }
+    }
+
+    /** Handle on a scheduled task. */
+    final class Timeout
+    {
+        static final int WAITING = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        final Runnable task;
+        final long deadline;
+        volatile int state = WAITING;
+        long rounds;
+        Bucket bucket;
+        Timeout next;
+        Timeout prev;
+
+        Timeout(Runnable task, long deadline)
+        {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** Cancels the task. Returns <code>false</code> if the task has
+         already run or been cancelled. */
+        boolean cancel()
+        {
+            if (!STATE.compareAndSet(this, WAITING, CANCELLED)) return false;
+            pending.decrementAndGet();
+            cancelled.add(this);
+            return true;
+        }
+
+        private void expire()
+        {
+            if (!STATE.compareAndSet(this, WAITING, EXPIRED)) return;
+            pending.decrementAndGet();
+            try
+            {
+                task.run();
+            }
+            catch (Throwable t)
+            {
+                // A failing task must not stop the wheel.
+            }
+        }
+    }
+
+    private static final class Bucket
+    {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout)
+        {
+            timeout.bucket = this;
+            if (head == null)
+            {
+                head = tail = timeout;
+            }
+            else
+            {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout)
+        {
+            if (timeout.bucket != this) return;
+            if (timeout.prev != null) timeout.prev.next = timeout.next;
+            else head = timeout.next;
+            if (timeout.next != null) timeout.next.prev = timeout.prev;
+            else tail = timeout.prev;
+            timeout.next = timeout.prev = null;
+            timeout.bucket = null;
+        }
+
+        void expire()
+        {
+            Timeout timeout = head;
+            while (timeout != null)
+            {
+                Timeout next = timeout.next;
+                if (timeout.state != Timeout.WAITING)
+                {
+                    remove(timeout);
+                }
+                else if (timeout.rounds <= 0)
+                {
+                    remove(timeout);
+                    timeout.expire();
+                }
+                else
+                {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
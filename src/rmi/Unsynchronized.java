@@ -0,0 +1,19 @@
+package rmi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Makes the skeleton invoke a method of the server object without regard
+ to the other invocations running on it, even if the interface or the class
+ of the server object is marked <code>@Exclusive</code>. The method must
+ synchronize itself as needed.
+
+ @see Exclusive
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Unsynchronized
+{
+}
@@ -0,0 +1,15 @@
+package rmi;
+
+/** How a thread waiting on a <code>RingBuffer</code> for an item passes the
+ time, trading processor time for wake-up latency.
+ */
+public enum WaitStrategy
+{
+    /** Spins without ever giving up the processor. The lowest latency, at
+     the cost of a whole processor per waiting thread. */
+    BUSY_SPIN,
+    /** Spins briefly, then yields the processor between checks. */
+    YIELD,
+    /** Spins and yields briefly, then parks until an item is published. */
+    PARK
+}
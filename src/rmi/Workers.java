@@ -0,0 +1,118 @@
+package rmi;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Worker threads of a skeleton, to which the listening thread hands
+ accepted connections and read calls through a <code>RingBuffer</code>
+ instead of starting a thread for each.
+
+ <p>
+ A task is only handed over if a worker is idle to take it, which the
+ listening thread reserves before publishing. A task therefore never waits
+ in the buffer behind a worker held up by a blocking call, which may itself
+ be waiting for that task, as when two calls meet at a rendezvous. With
+ every worker busy, the skeleton falls back to a thread of its own for the
+ task.
+ */
+class Workers
+{
+    private final RingBuffer<Runnable> handoff;
+    private final Thread[] threads;
+    /** Workers waiting for a task, less the tasks reserved for them. */
+    private final AtomicInteger idle = new AtomicInteger();
+
+    /** Starts <code>count</code> daemon workers waiting with the given
+     strategy. */
+    Workers(String name, int count, WaitStrategy strategy)
+    {
+        if (count <= 0) throw new IllegalArgumentException("count <= 0");
+        this.handoff = new RingBuffer<>(Integer.highestOneBit(count * 2 - 1) << 1, strategy);
+        this.threads = new Thread[count];
+        for (int i = 0 ; i < count ; i++)
+        {
+            threads[i] = new Worker(this::run, name + "-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /** Hands a task to an idle worker. Returns <code>false</code> if every
+     worker is busy. */
+    boolean execute(Runnable task)
+    {
+        if (idle.getAndDecrement() <= 0)
+        {
+            idle.incrementAndGet();
+            return false;
+        }
+        if (!handoff.offer(task))
+        {
+            // Closed.
+            idle.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** Returns the number of workers waiting for a task. */
+    int idle()
+    {
+        return Math.max(0, idle.get());
+    }
+
+    /** Stops the workers once the tasks handed to them have run. */
+    void close()
+    {
+        handoff.close();
+    }
+
+    /** Waits for the workers to stop. */
+    void join() throws InterruptedException
+    {
+        for (Thread thread : threads) thread.join();
+    }
+
+    /** Returns <code>true</code> if the current thread is a worker, which
+     runs tasks one after another. */
+    static boolean onWorkerThread()
+    {
+        return Thread.currentThread() instanceof Worker;
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            idle.incrementAndGet();
+            Runnable task;
+            try
+            {
+                task = handoff.take();
+            }
+            catch (InterruptedException e)
+            {
+                // Workers are stopped by closing the buffer.
+                idle.decrementAndGet();
+                continue;
+            }
+            if (task == null) return;
+            try
+            {
+                task.run();
+            }
+            catch (RuntimeException e)
+            {
+                // Handlers report their own errors; keep the worker.
+            }
+        }
+    }
+
+    /** Thread of a worker. */
+    private static final class Worker extends Thread
+    {
+        Worker(Runnable body, String name)
+        {
+            super(body, name);
+        }
+    }
+}
@@ -8,6 +8,32 @@ import test.*;
     Tests run are:
     <ul>
     <li>{@link rmi.SampleUnitTest}</li>
+    <li>{@link rmi.RegistryClientTest}</li>
+    <li>{@link rmi.ResultCacheTest}</li>
+    <li>{@link rmi.MemoCacheTest}</li>
+    <li>{@link rmi.LoadBalancerTest}</li>
+    <li>{@link rmi.HedgePolicyTest}</li>
+    <li>{@link rmi.TimingWheelTest}</li>
+    <li>{@link rmi.CircuitBreakerTest}</li>
+    <li>{@link rmi.HashRingTest}</li>
+    <li>{@link rmi.GroupCallTest}</li>
+    <li>{@link rmi.DispatcherTest}</li>
+    <li>{@link rmi.CompartmentTest}</li>
+    <li>{@link rmi.AdaptiveLimitTest}</li>
+    <li>{@link rmi.ServerLockTest}</li>
+    <li>{@link rmi.MailboxTest}</li>
+    <li>{@link rmi.PartitionTest}</li>
+    <li>{@link rmi.ServerPoolTest}</li>
+    <li>{@link rmi.ExecutionPolicyTest}</li>
+    <li>{@link rmi.RingBufferTest}</li>
+    <li>{@link rmi.SpinnerTest}</li>
+    <li>{@link rmi.CallCoalescerTest}</li>
+    <li>{@link rmi.InvocationCoalescerTest}</li>
+    <li>{@link rmi.HedgedCallTest}</li>
+    <li>{@link rmi.ReplicatedRoutingTest}</li>
+    <li>{@link rmi.AsyncCallTest}</li>
+    <li>{@link rmi.ShardedStubTest}</li>
+    <li>{@link rmi.CallCopyContextTest}</li>
     </ul>
  */
 public class UnitTests
@@ -21,7 +47,33 @@ public class UnitTests
         // Create the test list, the series object, and run the test series.
         @SuppressWarnings("unchecked")
         Class<? extends Test>[]     tests =
-            new Class[] {rmi.SampleUnitTest.class};
+            new Class[] {rmi.SampleUnitTest.class,
+                         rmi.RegistryClientTest.class,
+                         rmi.ResultCacheTest.class,
+                         rmi.MemoCacheTest.class,
+                         rmi.LoadBalancerTest.class,
+                         rmi.HedgePolicyTest.class,
+                         rmi.TimingWheelTest.class,
+                         rmi.CircuitBreakerTest.class,
+                         rmi.HashRingTest.class,
+                         rmi.GroupCallTest.class,
+                         rmi.DispatcherTest.class,
+                         rmi.CompartmentTest.class,
+                         rmi.AdaptiveLimitTest.class,
+                         rmi.ServerLockTest.class,
+                         rmi.MailboxTest.class,
+                         rmi.PartitionTest.class,
+                         rmi.ServerPoolTest.class,
+                         rmi.ExecutionPolicyTest.class,
+                         rmi.RingBufferTest.class,
+                         rmi.SpinnerTest.class,
+                         rmi.CallCoalescerTest.class,
+                         rmi.InvocationCoalescerTest.class,
+                         rmi.HedgedCallTest.class,
+                         rmi.ReplicatedRoutingTest.class,
+                         rmi.AsyncCallTest.class,
+                         rmi.ShardedStubTest.class,
+                         rmi.CallCopyContextTest.class};
         Series                      series = new Series(tests);
         SeriesReport                report = series.run(3, System.out);
 
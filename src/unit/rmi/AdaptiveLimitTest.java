@@ -0,0 +1,42 @@
+package rmi;
+
+import test.*;
+
+/** Tests that <code>AdaptiveLimit</code> grows under steady latency and
+    shrinks when latency rises. */
+public class AdaptiveLimitTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking adaptive concurrency limit";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        AdaptiveLimit           limit = new AdaptiveLimit(10, 2, 100);
+
+        for(int i = 0; i < 20; i++)
+            limit.update(1000000, 1);
+        if(limit.limit() != 10)
+            throw new TestFailed("limit changed while mostly idle");
+
+        for(int i = 0; i < 200; i++)
+            limit.update(1000000, limit.limit());
+        if(limit.limit() != 100)
+            throw new TestFailed("limit did not grow to its maximum: " +
+                                 limit.limit());
+
+        for(int i = 0; i < 50; i++)
+            limit.update(5000000, limit.limit());
+        int                     congested = limit.limit();
+        if(congested > 20)
+            throw new TestFailed("limit did not shrink with latency: " +
+                                 congested);
+        if(congested < 2)
+            throw new TestFailed("limit fell below its minimum");
+
+        for(int i = 0; i < 500; i++)
+            limit.update(1000000, limit.limit());
+        if(limit.limit() <= congested)
+            throw new TestFailed("limit did not recover after latency fell");
+    }
+}
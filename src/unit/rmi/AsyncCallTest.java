@@ -0,0 +1,219 @@
+package rmi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import test.*;
+
+/** Tests calls of server methods returning futures: the value and the failure
+    of the server's future reach the client's future, the service thread is
+    released before the server's future completes, and only successful
+    values of <code>@Deterministic</code> methods are memoized. Also tests
+    that cancelling the client's future interrupts the invocation. */
+public class AsyncCallTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking future-returning methods";
+
+    /** Remote interface with methods returning futures. */
+    public interface Service
+    {
+        /** Returns a future the test completes. */
+        CompletableFuture<String> later() throws RMIException;
+        /** Returns a future failed with the given message. */
+        CompletableFuture<String> fail(String message) throws RMIException;
+        /** Returns a future which fails on the first call and succeeds on
+            the following ones. */
+        @Deterministic
+        CompletableFuture<Integer> lookup(int key) throws RMIException;
+        /** Blocks until interrupted, then returns a failed future. */
+        CompletableFuture<String> block() throws RMIException;
+    }
+
+    private static class Server implements Service
+    {
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+        final AtomicInteger     lookups = new AtomicInteger();
+        volatile Thread         serviceThread;
+        final CountDownLatch    blocking = new CountDownLatch(1);
+        final CountDownLatch    interrupted = new CountDownLatch(1);
+
+        @Override
+        public CompletableFuture<String> later()
+        {
+            serviceThread = Thread.currentThread();
+            return pending;
+        }
+
+        @Override
+        public CompletableFuture<String> fail(String message)
+        {
+            return CompletableFuture.failedFuture(
+                new IllegalStateException(message));
+        }
+
+        @Override
+        public CompletableFuture<Integer> lookup(int key)
+        {
+            if(lookups.getAndIncrement() == 0)
+            {
+                return CompletableFuture.failedFuture(
+                    new IllegalStateException("not ready"));
+            }
+            return CompletableFuture.completedFuture(key * key);
+        }
+
+        @Override
+        public CompletableFuture<String> block()
+        {
+            blocking.countDown();
+            try
+            {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            }
+            catch(InterruptedException e)
+            {
+                interrupted.countDown();
+            }
+            return CompletableFuture.failedFuture(
+                new IllegalStateException("not cancelled"));
+        }
+    }
+
+    private Server              server;
+    private Skeleton<Service>   skeleton;
+
+    @Override
+    protected void initialize() throws TestFailed
+    {
+        server = new Server();
+        skeleton = new Skeleton<>(Service.class, server);
+        // One thread per connection, so that the service thread of a call
+        // ends when it is released.
+        skeleton.setWorkers(0, WaitStrategy.PARK);
+        skeleton.getExecutionPolicy().setEnabled(false);
+        try
+        {
+            skeleton.start();
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("unable to start skeleton", e);
+        }
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        try
+        {
+            Service             stub = Stub.create(Service.class, skeleton);
+            checkCompletion(stub);
+            checkFailure(stub);
+            checkMemoized(stub);
+            checkCancel(stub);
+        }
+        catch(TestFailed e)
+        {
+            throw e;
+        }
+        catch(Throwable t)
+        {
+            throw new TestFailed("unexpected exception", t);
+        }
+    }
+
+    /** Checks that the service thread is released while the server's future
+        is pending, and that the client's future then completes with its
+        value. */
+    private void checkCompletion(Service stub) throws Throwable
+    {
+        CompletableFuture<String>   result = stub.later();
+
+        long                    limit = System.currentTimeMillis() + 5000;
+        while(server.serviceThread == null)
+        {
+            if(System.currentTimeMillis() > limit)
+                throw new TestFailed("call did not reach the server");
+            Thread.sleep(1);
+        }
+        server.serviceThread.join(5000);
+        if(server.serviceThread.isAlive())
+            throw new TestFailed("service thread held until completion");
+        if(result.isDone())
+            throw new TestFailed("client future completed early");
+
+        server.pending.complete("done");
+        if(!"done".equals(result.get(5, TimeUnit.SECONDS)))
+            throw new TestFailed("client future got wrong value");
+    }
+
+    /** Checks that a failed server future fails the client's future with the
+        same cause. */
+    private void checkFailure(Service stub) throws Throwable
+    {
+        try
+        {
+            stub.fail("broken").get(5, TimeUnit.SECONDS);
+            throw new TestFailed("failed future completed normally");
+        }
+        catch(ExecutionException e)
+        {
+            Throwable           cause = e.getCause();
+            if(!(cause instanceof IllegalStateException) ||
+               !"broken".equals(cause.getMessage()))
+            {
+                throw new TestFailed("client future failed with wrong cause",
+                                     cause);
+            }
+        }
+    }
+
+    /** Checks that a failed future of a <code>@Deterministic</code> method is
+        not memoized, and that its successful value is. */
+    private void checkMemoized(Service stub) throws Throwable
+    {
+        try
+        {
+            stub.lookup(3).get(5, TimeUnit.SECONDS);
+            throw new TestFailed("failed lookup completed normally");
+        }
+        catch(ExecutionException e)
+        {
+        }
+        if(stub.lookup(3).get(5, TimeUnit.SECONDS) != 9)
+            throw new TestFailed("failed future was memoized");
+        if(stub.lookup(3).get(5, TimeUnit.SECONDS) != 9 ||
+           server.lookups.get() != 2)
+        {
+            throw new TestFailed("successful value not memoized: " +
+                                 server.lookups.get() + " invocations");
+        }
+    }
+
+    /** Checks that cancelling the client's future interrupts the invocation
+        on the skeleton. */
+    private void checkCancel(Service stub) throws Throwable
+    {
+        CompletableFuture<String>   result = stub.block();
+
+        if(!server.blocking.await(5, TimeUnit.SECONDS))
+            throw new TestFailed("call did not reach the server");
+        result.cancel(true);
+        if(!server.interrupted.await(5, TimeUnit.SECONDS))
+            throw new TestFailed("cancelled call not interrupted on server");
+    }
+
+    @Override
+    protected void clean()
+    {
+        if(skeleton != null)
+        {
+            skeleton.stop();
+            skeleton = null;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import test.*;
+
+/** Tests coalescing of identical calls, the fan-out of results and
+    exceptions to the coalesced callers, and the deadlines of coalesced calls
+    in <code>CallCoalescer</code>. */
+public class CallCoalescerTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking client-side call coalescer";
+
+    private static final int    CALLERS = 8;
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        Method                  method;
+        try
+        {
+            method = List.class.getMethod("get", int.class);
+        }
+        catch(NoSuchMethodException e)
+        {
+            throw new TestFailed("unable to find test method", e);
+        }
+
+        checkResults(method);
+        checkExceptions(method);
+        checkFollowerDeadline(method);
+        checkLeaderDeadline(method);
+    }
+
+    /** Checks that concurrent identical calls are performed once, and that
+        each caller receives its own copy of the result. */
+    private void checkResults(Method method) throws TestFailed
+    {
+        CallCoalescer           coalescer = new CallCoalescer();
+        CountDownLatch          release = new CountDownLatch(1);
+        AtomicInteger           performed = new AtomicInteger();
+        Object[]                results = new Object[CALLERS];
+
+        List<Thread>            callers = start(i -> {
+            results[i] = coalescer.call(new CallKey(method, new Object[] {1}),
+                                        () -> {
+                performed.incrementAndGet();
+                release.await();
+                List<String>    list = new ArrayList<>();
+                list.add("value");
+                return list;
+            });
+        });
+        awaitCoalesced(coalescer, CALLERS - 1);
+        release.countDown();
+        join(callers);
+
+        if(performed.get() != 1 || coalescer.sent() != 1)
+            throw new TestFailed("identical calls not coalesced");
+        for(int i = 0; i < CALLERS; i++)
+        {
+            if(!List.of("value").equals(results[i]))
+                throw new TestFailed("coalesced caller got wrong result");
+            for(int j = 0; j < i; j++)
+            {
+                if(results[i] == results[j])
+                    throw new TestFailed("callers share one result object");
+            }
+        }
+        if(coalescer.inFlight() != 0)
+            throw new TestFailed("completed call still in flight");
+    }
+
+    /** Checks that the exception of a coalesced call reaches every caller, as
+        a copy of its own. */
+    private void checkExceptions(Method method) throws TestFailed
+    {
+        CallCoalescer           coalescer = new CallCoalescer();
+        CountDownLatch          release = new CountDownLatch(1);
+        Throwable[]             thrown = new Throwable[CALLERS];
+
+        List<Thread>            callers = start(i -> {
+            try
+            {
+                coalescer.call(new CallKey(method, new Object[] {2}), () -> {
+                    release.await();
+                    throw new RMIException("failed");
+                });
+            }
+            catch(Throwable t)
+            {
+                thrown[i] = t;
+            }
+        });
+        awaitCoalesced(coalescer, CALLERS - 1);
+        release.countDown();
+        join(callers);
+
+        for(int i = 0; i < CALLERS; i++)
+        {
+            if(!(thrown[i] instanceof RMIException) ||
+               !"failed".equals(thrown[i].getMessage()))
+            {
+                throw new TestFailed("exception not delivered to caller",
+                                     thrown[i]);
+            }
+            for(int j = 0; j < i; j++)
+            {
+                if(thrown[i] == thrown[j])
+                    throw new TestFailed("callers share one exception object");
+            }
+        }
+    }
+
+    /** Checks that a coalesced call with a deadline stops waiting for a call
+        in flight without one when its deadline passes. */
+    private void checkFollowerDeadline(Method method) throws TestFailed
+    {
+        CallCoalescer           coalescer = new CallCoalescer();
+        CallKey                 key = new CallKey(method, new Object[] {3});
+        CountDownLatch          entered = new CountDownLatch(1);
+        CountDownLatch          release = new CountDownLatch(1);
+        Throwable[]             thrown = new Throwable[1];
+        long[]                  waited = new long[1];
+
+        Thread                  leader = new Thread(() -> {
+            try
+            {
+                coalescer.call(key, () -> {
+                    entered.countDown();
+                    release.await();
+                    return "value";
+                });
+            }
+            catch(Throwable t)
+            {
+            }
+        });
+        leader.start();
+        await(entered);
+        Thread                  follower = new Thread(() -> {
+            long                start = System.nanoTime();
+            try
+            {
+                callWithin(coalescer, key, 20);
+            }
+            catch(Throwable t)
+            {
+                thrown[0] = t;
+            }
+            waited[0] = System.nanoTime() - start;
+        });
+        follower.start();
+        try
+        {
+            join(List.of(follower));
+        }
+        finally
+        {
+            release.countDown();
+            join(List.of(leader));
+        }
+
+        if(!(thrown[0] instanceof DeadlineExceededException))
+            throw new TestFailed("follower did not fail on its deadline",
+                                 thrown[0]);
+        if(waited[0] > TimeUnit.SECONDS.toNanos(2))
+            throw new TestFailed("follower waited past its deadline");
+    }
+
+    /** Checks that calls attached to a call which fails on its own deadline
+        are sent again instead of failing with it. */
+    private void checkLeaderDeadline(Method method) throws TestFailed
+    {
+        CallCoalescer           coalescer = new CallCoalescer();
+        CountDownLatch          entered = new CountDownLatch(1);
+        CountDownLatch          release = new CountDownLatch(1);
+        AtomicInteger           performed = new AtomicInteger();
+        Object[]                results = new Object[CALLERS];
+        RemoteCall              call = () -> {
+            if(performed.getAndIncrement() > 0)
+                return "value";
+            entered.countDown();
+            release.await();
+            throw new DeadlineExceededException("leader deadline passed");
+        };
+
+        Thread                  leader = new Thread(() -> {
+            try
+            {
+                coalescer.call(new CallKey(method, new Object[] {4}), call);
+            }
+            catch(Throwable t)
+            {
+                results[0] = t;
+            }
+        });
+        leader.start();
+        await(entered);
+        List<Thread>            followers = start(i -> {
+            if(i > 0)
+            {
+                results[i] = coalescer.call(
+                    new CallKey(method, new Object[] {4}), call);
+            }
+        });
+        awaitCoalesced(coalescer, CALLERS - 1);
+        release.countDown();
+        join(followers);
+        join(List.of(leader));
+
+        if(!(results[0] instanceof DeadlineExceededException))
+            throw new TestFailed("leader did not fail on its deadline");
+        for(int i = 1; i < CALLERS; i++)
+        {
+            if(!"value".equals(results[i]))
+            {
+                throw new TestFailed("follower failed with the leader's " +
+                                     "deadline: " + results[i]);
+            }
+        }
+    }
+
+    /** Makes a call through the coalescer with a deadline of the given
+        number of milliseconds. */
+    // The context is only opened for the call, and not referenced.
+    @SuppressWarnings("try")
+    private static Object callWithin(CallCoalescer coalescer, CallKey key,
+                                     long millis) throws Throwable
+    {
+        try(CallContext context =
+                CallContext.withDeadline(millis, TimeUnit.MILLISECONDS))
+        {
+            return coalescer.call(key, () -> "unexpected");
+        }
+    }
+
+    /** Body of a test caller. */
+    private interface Caller
+    {
+        void call(int index) throws Throwable;
+    }
+
+    /** Starts <code>CALLERS</code> threads running the caller. */
+    private List<Thread> start(Caller caller) throws TestFailed
+    {
+        List<Thread>            threads = new ArrayList<>();
+        for(int i = 0; i < CALLERS; i++)
+        {
+            final int           index = i;
+            Thread              thread = new Thread(() -> {
+                try
+                {
+                    caller.call(index);
+                }
+                catch(Throwable t)
+                {
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        return threads;
+    }
+
+    /** Waits until the given number of calls have been coalesced. */
+    private void awaitCoalesced(CallCoalescer coalescer, int count)
+        throws TestFailed
+    {
+        long                    limit = System.currentTimeMillis() + 10000;
+        while(coalescer.coalesced() < count)
+        {
+            if(System.currentTimeMillis() > limit)
+                throw new TestFailed("calls not coalesced");
+            try
+            {
+                Thread.sleep(1);
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while waiting for calls", e);
+            }
+        }
+    }
+
+    private void await(CountDownLatch latch) throws TestFailed
+    {
+        try
+        {
+            latch.await();
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while waiting for call", e);
+        }
+    }
+
+    private void join(List<Thread> threads) throws TestFailed
+    {
+        for(Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while waiting for callers",
+                                     e);
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package rmi;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import test.*;
+
+/** Tests that copies of a call sent from background threads, the hedged
+    copy of a balanced call and the copies of a group call, carry the lane
+    and client identifier of the caller's <code>CallContext</code>. */
+public class CallCopyContextTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking call context of call copies";
+
+    /** Time for which the servers hold each response. */
+    private static final long   DELAY_MILLIS = 200;
+
+    /** Remote interface of the test servers. */
+    public interface Service
+    {
+        @Idempotent
+        String ping() throws RMIException;
+    }
+
+    /** Server answering calls by hand, recording the shuttle of each call it
+        receives. */
+    private static class RecordingServer implements Runnable
+    {
+        final ServerSocket      socket;
+        final InetSocketAddress address;
+        private final List<Shuttle> received = new ArrayList<>();
+
+        RecordingServer() throws IOException
+        {
+            InetAddress         loopback = InetAddress.getLoopbackAddress();
+            socket = new ServerSocket(0, 50, loopback);
+            address = new InetSocketAddress(loopback, socket.getLocalPort());
+        }
+
+        @Override
+        public void run()
+        {
+            while(!socket.isClosed())
+            {
+                try
+                {
+                    Socket      connection = socket.accept();
+                    new Thread(() -> answer(connection)).start();
+                }
+                catch(IOException e)
+                {
+                }
+            }
+        }
+
+        private void answer(Socket connection)
+        {
+            try(Socket s = connection)
+            {
+                ObjectInputStream   in =
+                    new ObjectInputStream(s.getInputStream());
+                Shuttle         shuttle = (Shuttle)in.readObject();
+                if(shuttle.cancel)
+                    return;
+                synchronized(this)
+                {
+                    received.add(shuttle);
+                    notifyAll();
+                }
+                Thread.sleep(DELAY_MILLIS);
+                ObjectOutputStream  out =
+                    new ObjectOutputStream(s.getOutputStream());
+                out.writeObject(new Return<Object>(String.class, "ok", null,
+                                                   null));
+                out.flush();
+            }
+            catch(IOException | ClassNotFoundException |
+                  InterruptedException e)
+            {
+                // The call was cancelled, or the test is over.
+            }
+        }
+
+        /** Waits until a call has been received, and returns its shuttle. */
+        synchronized Shuttle await() throws TestFailed
+        {
+            long                limit = System.currentTimeMillis() + 5000;
+            while(received.isEmpty())
+            {
+                long            left = limit - System.currentTimeMillis();
+                if(left <= 0)
+                    throw new TestFailed("call copy not received");
+                try
+                {
+                    wait(left);
+                }
+                catch(InterruptedException e)
+                {
+                    throw new TestFailed("interrupted", e);
+                }
+            }
+            return received.remove(0);
+        }
+
+        void close()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch(IOException e)
+            {
+            }
+        }
+    }
+
+    private RecordingServer     first;
+    private RecordingServer     second;
+
+    @Override
+    protected void initialize() throws TestFailed
+    {
+        try
+        {
+            first = new RecordingServer();
+            second = new RecordingServer();
+        }
+        catch(IOException e)
+        {
+            throw new TestFailed("unable to open server sockets", e);
+        }
+        new Thread(first).start();
+        new Thread(second).start();
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        List<InetSocketAddress> addresses =
+            List.of(first.address, second.address);
+        CallContext             lane = CallContext.withPriority(Lane.HIGH);
+        CallContext             client = CallContext.withClientId("tenant");
+        try
+        {
+            checkHedged(addresses);
+            checkGroup(addresses);
+        }
+        finally
+        {
+            client.close();
+            lane.close();
+        }
+    }
+
+    /** Checks that both copies of a hedged call carry the caller's lane and
+        client identifier. */
+    private void checkHedged(List<InetSocketAddress> addresses)
+        throws TestFailed
+    {
+        HedgePolicy             hedging = new HedgePolicy(100);
+        for(int i = 0; i < LatencyTracker.MIN_SAMPLES; i++)
+            hedging.record(TimeUnit.MILLISECONDS.toNanos(1));
+        BalancedInvocationHandler<Service>  handler =
+            new BalancedInvocationHandler<>(Service.class,
+                                            new LoadBalancer(addresses),
+                                            hedging);
+        try
+        {
+            Method              ping = Service.class.getMethod("ping");
+            if(!"ok".equals(handler.call(ping, new Object[0])))
+                throw new TestFailed("hedged call returned wrong value");
+        }
+        catch(TestFailed e)
+        {
+            throw e;
+        }
+        catch(Throwable t)
+        {
+            throw new TestFailed("hedged call failed", t);
+        }
+        if(hedging.hedged() != 1)
+            throw new TestFailed("call was not hedged");
+
+        check(first.await(), "hedged call");
+        check(second.await(), "hedged call");
+    }
+
+    /** Checks that every copy of a group call carries the caller's lane and
+        client identifier. */
+    private void checkGroup(List<InetSocketAddress> addresses)
+        throws TestFailed
+    {
+        GroupStub<Service>      group =
+            Stub.createGroup(Service.class, addresses);
+        try
+        {
+            if(!List.of("ok", "ok").equals(group.all(s -> s.ping())))
+                throw new TestFailed("group call returned wrong values");
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("group call failed", e);
+        }
+
+        check(first.await(), "group call");
+        check(second.await(), "group call");
+    }
+
+    private void check(Shuttle shuttle, String call) throws TestFailed
+    {
+        if(shuttle.lane != Lane.HIGH)
+            throw new TestFailed("copy of " + call + " sent in lane " +
+                                 shuttle.lane);
+        if(!"tenant".equals(shuttle.clientId))
+            throw new TestFailed("copy of " + call + " sent for client " +
+                                 shuttle.clientId);
+    }
+
+    @Override
+    protected void clean()
+    {
+        if(first != null)
+            first.close();
+        if(second != null)
+            second.close();
+    }
+}
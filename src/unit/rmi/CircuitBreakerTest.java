@@ -0,0 +1,97 @@
+package rmi;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import test.*;
+
+/** Tests the state transitions of <code>CircuitBreaker</code>. */
+public class CircuitBreakerTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking circuit breaker transitions";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        InetSocketAddress       address = new InetSocketAddress("127.0.0.1", 1);
+        CircuitBreaker          breaker = new CircuitBreaker(address);
+        final List<String>      transitions = new ArrayList<>();
+
+        breaker.setWindow(10, 4);
+        breaker.setOpenPeriod(50, 2);
+        breaker.addListener((a, from, to) -> transitions.add(from + "->" + to));
+
+        try
+        {
+            for(int i = 0; i < 3; i++)
+            {
+                breaker.acquire();
+                breaker.failed();
+            }
+            if(breaker.getState() != CircuitBreaker.State.CLOSED)
+                throw new TestFailed("breaker opened before minimum calls");
+
+            breaker.acquire();
+            breaker.succeeded(0);
+            if(breaker.getState() != CircuitBreaker.State.OPEN)
+                throw new TestFailed("breaker did not open on failure rate");
+        }
+        catch(CircuitOpenException e)
+        {
+            throw new TestFailed("closed breaker refused a call", e);
+        }
+
+        try
+        {
+            breaker.acquire();
+            throw new TestFailed("open breaker allowed a call");
+        }
+        catch(CircuitOpenException e) { }
+
+        try
+        {
+            Thread.sleep(60);
+            breaker.acquire();
+            breaker.acquire();
+        }
+        catch(CircuitOpenException | InterruptedException e)
+        {
+            throw new TestFailed("half-open breaker refused a trial call", e);
+        }
+
+        try
+        {
+            breaker.acquire();
+            throw new TestFailed("half-open breaker allowed too many calls");
+        }
+        catch(CircuitOpenException e) { }
+
+        breaker.succeeded(0);
+        breaker.succeeded(0);
+        if(breaker.getState() != CircuitBreaker.State.CLOSED)
+            throw new TestFailed("breaker did not close after trial calls");
+
+        breaker.setSlowCallThreshold(10, 0.5);
+        try
+        {
+            for(int i = 0; i < 4; i++)
+            {
+                breaker.acquire();
+                breaker.succeeded(i % 2 == 0 ? 20000000L : 0);
+            }
+        }
+        catch(CircuitOpenException e)
+        {
+            throw new TestFailed("closed breaker refused a call", e);
+        }
+        if(breaker.getState() != CircuitBreaker.State.OPEN)
+            throw new TestFailed("breaker did not open on slow call rate");
+
+        String                  expected = "[CLOSED->OPEN, OPEN->HALF_OPEN, " +
+                                           "HALF_OPEN->CLOSED, CLOSED->OPEN]";
+        if(!transitions.toString().equals(expected))
+            throw new TestFailed("unexpected transitions: " + transitions);
+    }
+}
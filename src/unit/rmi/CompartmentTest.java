@@ -0,0 +1,119 @@
+package rmi;
+
+import java.lang.reflect.Method;
+
+import test.*;
+
+/** Tests the limits and gauges of bulkhead <code>Compartment</code>s, and the
+    placement of methods in them. */
+public class CompartmentTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking bulkhead compartments";
+
+    private interface Service
+    {
+        @Bulkhead(maxConcurrent = 1)
+        void load(String key) throws RMIException;
+        void load(int key) throws RMIException;
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        Compartment             compartment = new Compartment("slow", 1, 1);
+        try
+        {
+            compartment.acquire();
+        }
+        catch(RejectedCallException | InterruptedException e)
+        {
+            throw new TestFailed("first call not admitted", e);
+        }
+
+        Thread                  waiter = new Thread(() -> {
+            try
+            {
+                compartment.acquire();
+                compartment.release(1000000);
+            }
+            catch(RejectedCallException | InterruptedException e)
+            {
+            }
+        });
+        waiter.start();
+        while(compartment.queued() < 1)
+        {
+            try
+            {
+                Thread.sleep(1);
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while queueing call", e);
+            }
+        }
+
+        try
+        {
+            compartment.acquire();
+            throw new TestFailed("call admitted to full compartment");
+        }
+        catch(RejectedCallException e)
+        {
+            if(e.getRetryAfterMillis() <= 0)
+                throw new TestFailed("no retry hint for rejected call");
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("rejected call waited", e);
+        }
+
+        if(compartment.active() != 1 || compartment.queued() != 1 ||
+           compartment.rejected() != 1)
+        {
+            throw new TestFailed("unexpected gauges: active " +
+                                 compartment.active() + ", queued " +
+                                 compartment.queued() + ", rejected " +
+                                 compartment.rejected());
+        }
+
+        compartment.release(5000000);
+        try
+        {
+            waiter.join();
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while waiting for call", e);
+        }
+        if(compartment.active() != 0 || compartment.queued() != 0)
+            throw new TestFailed("queued call not admitted on release");
+
+        checkOverloads();
+    }
+
+    /** Checks that <code>@Bulkhead</code> places only the annotated overload
+        of a method in the bulkhead. */
+    private void checkOverloads() throws TestFailed
+    {
+        SkeletonService<Service>    service = new SkeletonService<>();
+        Method                  annotated;
+        Method                  overload;
+        try
+        {
+            annotated = Service.class.getMethod("load", String.class);
+            overload = Service.class.getMethod("load", int.class);
+        }
+        catch(NoSuchMethodException e)
+        {
+            throw new TestFailed("unable to find test methods", e);
+        }
+        service.declareBulkheads(Service.class);
+
+        if(service.methodCompartments.get(annotated) == null)
+            throw new TestFailed("annotated method not in bulkhead");
+        if(service.methodCompartments.get(overload) != null)
+            throw new TestFailed("unannotated overload placed in bulkhead");
+    }
+}
@@ -0,0 +1,335 @@
+package rmi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import test.*;
+
+/** Tests lane ordering, starvation protection, fair queuing, client limits,
+    load shedding and cost-aware scheduling of <code>Dispatcher</code>. */
+public class DispatcherTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking dispatcher lanes and fairness";
+
+    private final List<String>  order = new ArrayList<>();
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        checkLanes();
+        checkFairness();
+        checkClientLimits();
+        checkShedding();
+        checkCostAware();
+    }
+
+    /** Checks that urgent lanes are served first, and that less urgent lanes
+        are still served every <code>STARVATION_LIMIT</code> admissions. */
+    private void checkLanes() throws TestFailed
+    {
+        Dispatcher              dispatcher = new Dispatcher();
+        dispatcher.setMaxConcurrency(1);
+        Dispatcher.Client       holder = admit(dispatcher, Lane.NORMAL, "holder");
+
+        List<Thread>            threads = new ArrayList<>();
+        for(int i = 0; i < 3; i++)
+            threads.add(start(dispatcher, Lane.LOW, "client", "L"));
+        awaitWaiting(dispatcher, Lane.LOW, 3);
+        for(int i = 0; i < 20; i++)
+            threads.add(start(dispatcher, Lane.HIGH, "client", "H"));
+        awaitWaiting(dispatcher, Lane.HIGH, 20);
+
+        dispatcher.release(holder, 0);
+        join(threads);
+
+        List<Integer>           lowPositions = new ArrayList<>();
+        for(int i = 0; i < order.size(); i++)
+        {
+            if(order.get(i).equals("L"))
+                lowPositions.add(i);
+        }
+        int                     limit = Dispatcher.STARVATION_LIMIT;
+        List<Integer>           expected = new ArrayList<>();
+        expected.add(limit);
+        expected.add(2 * limit + 1);
+        expected.add(22);
+        if(!lowPositions.equals(expected))
+            throw new TestFailed("low lane admitted at " + lowPositions +
+                                 ", expected " + expected);
+
+        if(dispatcher.admitted(Lane.HIGH) != 20 ||
+           dispatcher.admitted(Lane.LOW) != 3)
+        {
+            throw new TestFailed("admissions not counted per lane");
+        }
+        if(dispatcher.maxWaitNanos(Lane.LOW) <= 0)
+            throw new TestFailed("queue wait not recorded");
+        if(dispatcher.running() != 0)
+            throw new TestFailed("calls still running after release");
+        if(dispatcher.clients() != 0)
+            throw new TestFailed("idle clients not forgotten");
+    }
+
+    /** Checks that a client with many waiting calls does not hold back a
+        client with few. */
+    private void checkFairness() throws TestFailed
+    {
+        order.clear();
+        Dispatcher              dispatcher = new Dispatcher();
+        dispatcher.setMaxConcurrency(1);
+        Dispatcher.Client       holder = admit(dispatcher, Lane.NORMAL, "holder");
+
+        List<Thread>            threads = new ArrayList<>();
+        for(int i = 0; i < 6; i++)
+            threads.add(start(dispatcher, Lane.NORMAL, "noisy", "A"));
+        awaitWaiting(dispatcher, Lane.NORMAL, 6);
+        for(int i = 0; i < 2; i++)
+            threads.add(start(dispatcher, Lane.NORMAL, "quiet", "B"));
+        awaitWaiting(dispatcher, Lane.NORMAL, 8);
+
+        dispatcher.release(holder, 0);
+        join(threads);
+
+        if(!String.join("", order).equals("ABABAAAA"))
+            throw new TestFailed("clients not served in round robin: " +
+                                 String.join("", order));
+    }
+
+    /** Checks the per-client concurrency and rate limits. */
+    private void checkClientLimits() throws TestFailed
+    {
+        order.clear();
+        Dispatcher              dispatcher = new Dispatcher();
+        dispatcher.setClientConcurrency(1);
+        Dispatcher.Client       first = admit(dispatcher, Lane.NORMAL, "a");
+
+        Thread                  second = start(dispatcher, Lane.NORMAL, "a", "A");
+        awaitWaiting(dispatcher, Lane.NORMAL, 1);
+        Dispatcher.Client       other = admit(dispatcher, Lane.NORMAL, "b");
+        dispatcher.release(other, 0);
+        if(dispatcher.waiting(Lane.NORMAL) != 1)
+            throw new TestFailed("client admitted beyond its concurrency limit");
+        dispatcher.release(first, 0);
+        List<Thread>            threads = new ArrayList<>();
+        threads.add(second);
+        join(threads);
+
+        dispatcher.setClientRate(2);
+        dispatcher.release(admit(dispatcher, Lane.NORMAL, "c"), 0);
+        dispatcher.release(admit(dispatcher, Lane.NORMAL, "c"), 0);
+        try
+        {
+            dispatcher.acquire(Lane.NORMAL, "c");
+            throw new TestFailed("call admitted beyond client rate");
+        }
+        catch(RejectedCallException e)
+        {
+            if(e.getRetryAfterMillis() <= 0 || e.getRetryAfterMillis() > 500)
+                throw new TestFailed("unexpected retry hint: " +
+                                     e.getRetryAfterMillis());
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while admitting call", e);
+        }
+        dispatcher.release(admit(dispatcher, Lane.NORMAL, "d"), 0);
+        if(dispatcher.rejected() != 1)
+            throw new TestFailed("rejections not counted");
+    }
+
+    /** Checks that calls are shed once queueing delays stay above the
+        target, and that shed calls are refused rather than run. */
+    private void checkShedding() throws TestFailed
+    {
+        order.clear();
+        Dispatcher              dispatcher = new Dispatcher();
+        dispatcher.setMaxConcurrency(1);
+        dispatcher.setShedding(1, 5);
+        Dispatcher.Client       holder = admit(dispatcher, Lane.NORMAL, "holder");
+
+        List<Thread>            threads = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+        {
+            threads.add(new Thread(() -> {
+                Dispatcher.Client   admitted;
+                try
+                {
+                    admitted = dispatcher.acquire(Lane.NORMAL, "client");
+                }
+                catch(RejectedCallException e)
+                {
+                    synchronized(order)
+                    {
+                        order.add("shed");
+                    }
+                    return;
+                }
+                catch(InterruptedException e)
+                {
+                    return;
+                }
+                try
+                {
+                    Thread.sleep(3);
+                }
+                catch(InterruptedException e) { }
+                dispatcher.release(admitted, 3000000);
+            }));
+            threads.get(i).start();
+        }
+        awaitWaiting(dispatcher, Lane.NORMAL, 8);
+        try
+        {
+            Thread.sleep(10);
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while queueing calls", e);
+        }
+
+        dispatcher.release(holder, 0);
+        join(threads);
+
+        if(dispatcher.shed() == 0)
+            throw new TestFailed("no call shed despite queueing delay");
+        if(dispatcher.shed() != order.size())
+            throw new TestFailed("shed calls not refused");
+        if(dispatcher.running() != 0)
+            throw new TestFailed("shed calls counted as running");
+    }
+
+    /** Checks that short calls are admitted first, that long calls age past
+        them, and that clients share invocation time rather than calls. */
+    private void checkCostAware() throws TestFailed
+    {
+        long                    shortCall = 50000;
+        long                    longCall = 500000000;
+
+        order.clear();
+        Dispatcher              dispatcher = new Dispatcher();
+        dispatcher.setMaxConcurrency(1);
+        dispatcher.setCostAware(true, 1);
+        Dispatcher.Client       holder = admit(dispatcher, Lane.NORMAL, "holder");
+        List<Thread>            threads = new ArrayList<>();
+        threads.add(start(dispatcher, Lane.NORMAL, "client", "L", longCall));
+        awaitWaiting(dispatcher, Lane.NORMAL, 1);
+        for(int i = 0; i < 4; i++)
+            threads.add(start(dispatcher, Lane.NORMAL, "client", "S", shortCall));
+        awaitWaiting(dispatcher, Lane.NORMAL, 5);
+        dispatcher.release(holder, 0);
+        join(threads);
+        if(!String.join("", order).equals("SSSSL"))
+            throw new TestFailed("short calls not admitted first: " +
+                                 String.join("", order));
+
+        order.clear();
+        holder = admit(dispatcher, Lane.NORMAL, "holder");
+        threads.clear();
+        threads.add(start(dispatcher, Lane.NORMAL, "client", "L", 5000000));
+        awaitWaiting(dispatcher, Lane.NORMAL, 1);
+        try
+        {
+            Thread.sleep(20);
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while queueing calls", e);
+        }
+        threads.add(start(dispatcher, Lane.NORMAL, "client", "S", shortCall));
+        awaitWaiting(dispatcher, Lane.NORMAL, 2);
+        dispatcher.release(holder, 0);
+        join(threads);
+        if(!String.join("", order).equals("LS"))
+            throw new TestFailed("long call not aged past short call: " +
+                                 String.join("", order));
+
+        order.clear();
+        holder = admit(dispatcher, Lane.NORMAL, "holder");
+        threads.clear();
+        for(int i = 0; i < 3; i++)
+            threads.add(start(dispatcher, Lane.NORMAL, "reports", "L", 10000000));
+        awaitWaiting(dispatcher, Lane.NORMAL, 3);
+        for(int i = 0; i < 20; i++)
+            threads.add(start(dispatcher, Lane.NORMAL, "lookups", "S", shortCall));
+        awaitWaiting(dispatcher, Lane.NORMAL, 23);
+        dispatcher.release(holder, 0);
+        join(threads);
+        if(order.indexOf("L") < 20)
+            throw new TestFailed("long calls charged as short ones: " +
+                                 String.join("", order));
+    }
+
+    private Dispatcher.Client admit(Dispatcher dispatcher, Lane lane,
+                                    Object client) throws TestFailed
+    {
+        try
+        {
+            return dispatcher.acquire(lane, client);
+        }
+        catch(RejectedCallException | InterruptedException e)
+        {
+            throw new TestFailed("call not admitted", e);
+        }
+    }
+
+    private Thread start(Dispatcher dispatcher, Lane lane, Object client,
+                         String label)
+    {
+        return start(dispatcher, lane, client, label, 0);
+    }
+
+    private Thread start(Dispatcher dispatcher, Lane lane, Object client,
+                         String label, long expectedNanos)
+    {
+        Thread                  thread = new Thread(() -> {
+            Dispatcher.Client   admitted;
+            try
+            {
+                admitted = dispatcher.acquire(lane, client, expectedNanos);
+            }
+            catch(RejectedCallException | InterruptedException e)
+            {
+                return;
+            }
+            synchronized(order)
+            {
+                order.add(label);
+            }
+            dispatcher.release(admitted, 0);
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void join(List<Thread> threads) throws TestFailed
+    {
+        for(Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while waiting for calls", e);
+            }
+        }
+    }
+
+    private void awaitWaiting(Dispatcher dispatcher, Lane lane, int count)
+        throws TestFailed
+    {
+        while(dispatcher.waiting(lane) < count)
+        {
+            try
+            {
+                Thread.sleep(1);
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while queueing calls", e);
+            }
+        }
+    }
+}
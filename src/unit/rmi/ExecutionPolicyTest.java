@@ -0,0 +1,99 @@
+package rmi;
+
+import java.lang.reflect.Method;
+
+import test.*;
+
+/** Tests the choice between inline and offloaded execution in
+    <code>ExecutionPolicy</code>. */
+public class ExecutionPolicyTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking execution policy";
+
+    private interface Service
+    {
+        void cheap() throws RMIException;
+        @RunOn(Execution.CPU)
+        void compute() throws RMIException;
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        ExecutionPolicy         policy = new ExecutionPolicy();
+        Method                  cheap;
+        Method                  compute;
+        try
+        {
+            cheap = Service.class.getMethod("cheap");
+            compute = Service.class.getMethod("compute");
+        }
+        catch(NoSuchMethodException e)
+        {
+            throw new TestFailed("unable to find test methods", e);
+        }
+        policy.declare(Service.class);
+        policy.setThresholds(100, 1000);
+
+        if(policy.executionOf(compute) != Execution.CPU ||
+           !policy.readsOnListener())
+        {
+            throw new TestFailed("@RunOn not applied");
+        }
+        if(policy.executionOf(cheap) != Execution.BLOCKING)
+            throw new TestFailed("method not offloaded before it is measured");
+
+        for(int i = 0; i < ExecutionPolicy.MIN_SAMPLES; i++)
+            record(policy, cheap, 10);
+        if(policy.executionOf(cheap) != Execution.INLINE)
+            throw new TestFailed("cheap method not run inline");
+
+        // Between the thresholds, the method keeps its current execution.
+        for(int i = 0; i < 50; i++)
+            record(policy, cheap, 500);
+        if(policy.executionOf(cheap) != Execution.INLINE)
+            throw new TestFailed("no hysteresis between thresholds");
+
+        for(int i = 0; i < 50; i++)
+            record(policy, cheap, 5000);
+        if(policy.executionOf(cheap) != Execution.BLOCKING)
+            throw new TestFailed("slow method not offloaded");
+        for(int i = 0; i < 50; i++)
+            record(policy, cheap, 500);
+        if(policy.executionOf(cheap) != Execution.BLOCKING)
+            throw new TestFailed("no hysteresis between thresholds");
+
+        for(int stall = 0; stall < ExecutionPolicy.MAX_STALLS; stall++)
+        {
+            for(int i = 0; i < 100; i++)
+                record(policy, cheap, 10);
+            if(policy.executionOf(cheap) != Execution.INLINE)
+                throw new TestFailed("method not run inline again after stall");
+            policy.stalled(cheap);
+            if(policy.executionOf(cheap) != Execution.BLOCKING)
+                throw new TestFailed("stalled method not offloaded");
+        }
+        for(int i = 0; i < 100; i++)
+            record(policy, cheap, 10);
+        if(policy.executionOf(cheap) != Execution.BLOCKING ||
+           policy.stalls() != ExecutionPolicy.MAX_STALLS)
+        {
+            throw new TestFailed("method stalling repeatedly not offloaded " +
+                                 "for good");
+        }
+
+        policy.setEnabled(false);
+        if(policy.executionOf(compute) != Execution.BLOCKING ||
+           policy.readsOnListener())
+        {
+            throw new TestFailed("disabled policy still offloads from " +
+                                 "the listener");
+        }
+    }
+
+    private void record(ExecutionPolicy policy, Method method, long micros)
+    {
+        policy.record(method, micros * 1000);
+    }
+}
@@ -0,0 +1,50 @@
+package rmi;
+
+import java.util.List;
+
+import test.*;
+
+/** Tests the completion rules of <code>GroupCall</code>. */
+public class GroupCallTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking group call completion";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        GroupCall               quorum = new GroupCall(3, 2, CallContext.NO_DEADLINE);
+        quorum.succeeded(2, "c");
+        quorum.failed(1, new RMIException("b"));
+        quorum.succeeded(0, "a");
+        try
+        {
+            List<Object>        results = quorum.await();
+            if(!results.toString().equals("[a, c]"))
+                throw new TestFailed("unexpected quorum results: " + results);
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("quorum call failed", e);
+        }
+
+        GroupCall               first = new GroupCall(3, 1, CallContext.NO_DEADLINE);
+        first.succeeded(1, "b");
+        if(!first.copies[0].isCancelled() || !first.copies[2].isCancelled())
+            throw new TestFailed("stragglers not cancelled");
+        if(first.copies[1].isCancelled())
+            throw new TestFailed("finished copy cancelled");
+
+        GroupCall               all = new GroupCall(3, 3, CallContext.NO_DEADLINE);
+        all.succeeded(0, "a");
+        all.failed(2, new RMIException("c"));
+        if(!all.copies[1].isCancelled())
+            throw new TestFailed("call not abandoned after decisive failure");
+        try
+        {
+            all.await();
+            throw new TestFailed("call succeeded despite a failed copy");
+        }
+        catch(RMIException e) { }
+    }
+}
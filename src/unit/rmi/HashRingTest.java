@@ -0,0 +1,77 @@
+package rmi;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import test.*;
+
+/** Tests key assignment, rebalancing and hot key reporting of
+    <code>HashRing</code>. */
+public class HashRingTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking consistent-hash ring";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for(int i = 0; i < 4; i++)
+            addresses.add(new InetSocketAddress("127.0.0.1", 7000 + i));
+        HashRing                ring = new HashRing(addresses);
+
+        int                     keys = 20000;
+        Map<InetSocketAddress, Integer> shares = new HashMap<>();
+        InetSocketAddress[]     before = new InetSocketAddress[keys];
+        for(int i = 0; i < keys; i++)
+        {
+            before[i] = ring.locate("key" + i);
+            shares.merge(before[i], 1, Integer::sum);
+        }
+        for(InetSocketAddress address : addresses)
+        {
+            int                 share = shares.getOrDefault(address, 0);
+            if(share < keys / 4 * 0.7 || share > keys / 4 * 1.3)
+                throw new TestFailed("unbalanced share for " + address + ": " +
+                                     share);
+        }
+
+        InetSocketAddress       added = new InetSocketAddress("127.0.0.1", 7004);
+        ring.add(added);
+        int                     moved = 0;
+        for(int i = 0; i < keys; i++)
+        {
+            InetSocketAddress   after = ring.locate("key" + i);
+            if(after.equals(before[i]))
+                continue;
+            if(!after.equals(added))
+                throw new TestFailed("key moved between existing skeletons");
+            moved++;
+        }
+        if(moved < keys / 5 * 0.7 || moved > keys / 5 * 1.3)
+            throw new TestFailed("unexpected number of moved keys: " + moved);
+
+        ring.remove(added);
+        for(int i = 0; i < keys; i++)
+        {
+            if(!ring.locate("key" + i).equals(before[i]))
+                throw new TestFailed("removing a skeleton did not restore " +
+                                     "the assignment");
+        }
+
+        InetSocketAddress       hot = ring.route("hot");
+        for(int i = 0; i < 1000; i++)
+        {
+            ring.route("hot");
+            ring.route("key" + i);
+        }
+        Map<Object, Long>       top = ring.hotKeys(hot, 3);
+        if(top.isEmpty() || !"hot".equals(top.keySet().iterator().next()))
+            throw new TestFailed("hot key not reported first: " + top);
+        if(top.get("hot") < 1001)
+            throw new TestFailed("hot key undercounted: " + top.get("hot"));
+    }
+}
@@ -0,0 +1,40 @@
+package rmi;
+
+import test.*;
+
+/** Tests the hedging delay and budget of <code>HedgePolicy</code>. */
+public class HedgePolicyTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking hedging delay and budget";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        HedgePolicy             policy = new HedgePolicy(5);
+
+        if(policy.delay() != -1)
+            throw new TestFailed("hedging delay set without measurements");
+
+        for(int i = 1; i <= 128; i++)
+            policy.record(i * 1000);
+        long                    delay = policy.delay();
+        if(delay < 115000 || delay > 128000)
+            throw new TestFailed("hedging delay is not the 95th percentile: " +
+                                 delay);
+
+        int                     hedges = 0;
+        for(int i = 0; i < 1000; i++)
+        {
+            policy.deposit();
+            if(policy.tryHedge())
+                hedges++;
+        }
+        if(hedges < 45 || hedges > 50)
+            throw new TestFailed("hedging budget not respected: " + hedges +
+                                 " hedges in 1000 calls");
+
+        if(new HedgePolicy(0).delay() != -1)
+            throw new TestFailed("zero budget did not disable hedging");
+    }
+}
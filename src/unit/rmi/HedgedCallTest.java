@@ -0,0 +1,115 @@
+package rmi;
+
+import test.*;
+
+/** Tests how <code>HedgedCall</code> settles the outcome of a call from its
+    primary and secondary copies. */
+public class HedgedCallTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking hedged call outcomes";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        checkRefusedHedge();
+        checkSecondaryWins();
+        checkBothFail();
+    }
+
+    /** Checks that a failed primary copy fails the call at once when the
+        secondary copy was claimed but refused by the hedging budget. */
+    private void checkRefusedHedge() throws TestFailed
+    {
+        HedgedCall              call = new HedgedCall(CallContext.NO_DEADLINE);
+        RMIException            failure = new RMIException("primary failed");
+
+        if(!call.startSecondary())
+            throw new TestFailed("secondary copy not claimed");
+        call.secondaryRefused();
+        call.primaryFailed(failure);
+        if(awaitFailure(call) != failure)
+            throw new TestFailed("call did not fail with primary failure");
+    }
+
+    /** Checks that the secondary copy's response is used when the primary
+        copy fails. */
+    private void checkSecondaryWins() throws TestFailed
+    {
+        HedgedCall              call = new HedgedCall(CallContext.NO_DEADLINE);
+        Return                  response = new Return(String.class, "value",
+                                                      null, null);
+
+        call.startSecondary();
+        call.primaryFailed(new RMIException("primary failed"));
+        Thread                  secondary = new Thread(() -> {
+            try
+            {
+                Thread.sleep(20);
+            }
+            catch(InterruptedException e)
+            {
+            }
+            call.secondarySucceeded(response);
+        });
+        secondary.start();
+        try
+        {
+            if(call.await() != response)
+                throw new TestFailed("secondary response not used");
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("call failed although secondary succeeded",
+                                 e);
+        }
+    }
+
+    /** Checks that the call fails with the primary failure once both copies
+        have failed. */
+    private void checkBothFail() throws TestFailed
+    {
+        HedgedCall              call = new HedgedCall(CallContext.NO_DEADLINE);
+        RMIException            failure = new RMIException("primary failed");
+
+        call.startSecondary();
+        call.primaryFailed(failure);
+        call.secondaryFailed();
+        if(awaitFailure(call) != failure)
+            throw new TestFailed("call did not fail with primary failure");
+    }
+
+    /** Waits for the call on another thread, failing the test if it does not
+        fail promptly. Returns the exception it failed with. */
+    private RMIException awaitFailure(HedgedCall call) throws TestFailed
+    {
+        RMIException[]          thrown = new RMIException[1];
+        Thread                  waiter = new Thread(() -> {
+            try
+            {
+                call.await();
+            }
+            catch(RMIException e)
+            {
+                thrown[0] = e;
+            }
+        });
+        waiter.start();
+        try
+        {
+            waiter.join(5000);
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while waiting for call", e);
+        }
+        if(waiter.isAlive())
+        {
+            waiter.interrupt();
+            throw new TestFailed("call hangs after its copies finished");
+        }
+        if(thrown[0] == null)
+            throw new TestFailed("call did not fail");
+        return thrown[0];
+    }
+}
@@ -0,0 +1,230 @@
+package rmi;
+
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import test.*;
+
+/** Tests coalescing of identical invocations in
+    <code>InvocationCoalescer</code>, and that cancelling the leading call
+    does not fail the calls waiting for it. */
+public class InvocationCoalescerTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice =
+        "checking skeleton-side invocation coalescer";
+
+    private static final int    FOLLOWERS = 7;
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        Method                  method;
+        try
+        {
+            method = List.class.getMethod("get", int.class);
+        }
+        catch(NoSuchMethodException e)
+        {
+            throw new TestFailed("unable to find test method", e);
+        }
+
+        checkCoalesced(method);
+        checkLeaderCancelled(method);
+    }
+
+    /** Checks that concurrent identical calls invoke the server object
+        once. */
+    private void checkCoalesced(Method method) throws TestFailed
+    {
+        InvocationCoalescer     coalescer = new InvocationCoalescer();
+        ArgumentKey             key = new ArgumentKey(method, new byte[] {1});
+        CountDownLatch          entered = new CountDownLatch(1);
+        CountDownLatch          release = new CountDownLatch(1);
+        AtomicInteger           invoked = new AtomicInteger();
+        Object[]                results = new Object[FOLLOWERS + 1];
+
+        ServerCall              call = () -> {
+            invoked.incrementAndGet();
+            entered.countDown();
+            try
+            {
+                release.await();
+            }
+            catch(InterruptedException e)
+            {
+                throw new InterruptedIOException();
+            }
+            return "value";
+        };
+
+        List<Thread>            threads = new ArrayList<>();
+        threads.add(start(() -> results[0] = coalescer.call(key, call, null)));
+        await(entered);
+        for(int i = 1; i <= FOLLOWERS; i++)
+        {
+            final int           index = i;
+            threads.add(start(() ->
+                results[index] = coalescer.call(key, call, null)));
+        }
+        awaitCoalesced(coalescer, FOLLOWERS);
+        release.countDown();
+        join(threads);
+
+        if(invoked.get() != 1 || coalescer.invoked() != 1)
+            throw new TestFailed("identical calls not coalesced");
+        for(Object result : results)
+        {
+            if(!"value".equals(result))
+                throw new TestFailed("coalesced call got wrong result");
+        }
+    }
+
+    /** Checks that when the leading call is cancelled during its invocation,
+        a waiting call invokes the server object in its place and the others
+        receive its result. */
+    private void checkLeaderCancelled(Method method) throws TestFailed
+    {
+        InvocationCoalescer     coalescer = new InvocationCoalescer();
+        ArgumentKey             key = new ArgumentKey(method, new byte[] {2});
+        CountDownLatch          entered = new CountDownLatch(1);
+        AtomicInteger           invoked = new AtomicInteger();
+        AtomicReference<RunningCall>    leader = new AtomicReference<>();
+        Object[]                results = new Object[FOLLOWERS + 1];
+
+        ServerCall              call = () -> {
+            if(invoked.getAndIncrement() > 0)
+                return "value";
+            entered.countDown();
+            try
+            {
+                new CountDownLatch(1).await();
+            }
+            catch(InterruptedException e)
+            {
+                throw new InterruptedIOException("leader cancelled");
+            }
+            return "unreachable";
+        };
+
+        List<Thread>            threads = new ArrayList<>();
+        threads.add(start(() -> {
+            RunningCall         running =
+                new RunningCall(new Shuttle(method, null));
+            leader.set(running);
+            try
+            {
+                results[0] = coalescer.call(key, call, running);
+            }
+            catch(InterruptedIOException e)
+            {
+                results[0] = e;
+            }
+            finally
+            {
+                running.finish();
+            }
+        }));
+        await(entered);
+        for(int i = 1; i <= FOLLOWERS; i++)
+        {
+            final int           index = i;
+            threads.add(start(() ->
+                results[index] = coalescer.call(key, call, null)));
+        }
+        awaitCoalesced(coalescer, FOLLOWERS);
+        leader.get().cancel();
+        join(threads);
+
+        if(!(results[0] instanceof InterruptedIOException))
+            throw new TestFailed("cancelled leader did not fail");
+        for(int i = 1; i <= FOLLOWERS; i++)
+        {
+            if(!"value".equals(results[i]))
+            {
+                throw new TestFailed("cancelling the leader failed a " +
+                                     "coalesced call: " + results[i]);
+            }
+        }
+        // Followers retrying after the replacement invocation has completed
+        // invoke the server object again, so only a lower bound holds.
+        if(invoked.get() < 2)
+        {
+            throw new TestFailed("server object invoked " + invoked.get() +
+                                 " times after cancelled leader");
+        }
+    }
+
+    /** Body of a test thread. */
+    private interface Body
+    {
+        void run() throws Exception;
+    }
+
+    private Thread start(Body body)
+    {
+        Thread                  thread = new Thread(() -> {
+            try
+            {
+                body.run();
+            }
+            catch(Exception e)
+            {
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /** Waits until the given number of calls have been coalesced. */
+    private void awaitCoalesced(InvocationCoalescer coalescer, int count)
+        throws TestFailed
+    {
+        long                    limit = System.currentTimeMillis() + 10000;
+        while(coalescer.coalesced() < count)
+        {
+            if(System.currentTimeMillis() > limit)
+                throw new TestFailed("calls not coalesced");
+            try
+            {
+                Thread.sleep(1);
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while waiting for calls", e);
+            }
+        }
+    }
+
+    private void await(CountDownLatch latch) throws TestFailed
+    {
+        try
+        {
+            latch.await();
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while waiting for invocation", e);
+        }
+    }
+
+    private void join(List<Thread> threads) throws TestFailed
+    {
+        for(Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while waiting for calls", e);
+            }
+        }
+    }
+}
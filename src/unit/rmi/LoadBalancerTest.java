@@ -0,0 +1,44 @@
+package rmi;
+
+import test.*;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+/** Tests endpoint choice and ejection in <code>LoadBalancer</code>. */
+public class LoadBalancerTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking multi-endpoint load balancer";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        LoadBalancer            balancer = new LoadBalancer(Arrays.asList(
+            new InetSocketAddress(7001), new InetSocketAddress(7002)));
+        Endpoint                fast = balancer.endpoints()[0];
+        Endpoint                slow = balancer.endpoints()[1];
+
+        fast.succeeded(1000000, 0);
+        slow.succeeded(50000000, 0);
+        for(int i = 0; i < 100; i++)
+        {
+            if(balancer.choose() != fast)
+                throw new TestFailed("balancer chose the slower endpoint");
+        }
+
+        long                    now = System.currentTimeMillis();
+        for(int i = 0; i < Endpoint.EJECT_AFTER; i++)
+            fast.failed(now);
+        if(!fast.isEjected(now))
+            throw new TestFailed("failing endpoint was not ejected");
+        if(balancer.choose() != slow)
+            throw new TestFailed("balancer chose an ejected endpoint");
+
+        for(int i = 0; i < Endpoint.EJECT_AFTER; i++)
+            slow.failed(now);
+        if(balancer.choose() == null)
+            throw new TestFailed("balancer refused a call with all endpoints " +
+                                 "ejected");
+    }
+}
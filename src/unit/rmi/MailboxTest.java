@@ -0,0 +1,167 @@
+package rmi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import test.*;
+
+/** Tests ordering, batching and abandonment in the actor
+    <code>Mailbox</code>. */
+public class MailboxTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking actor mailbox";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        Mailbox                 mailbox = new Mailbox("mailbox-test");
+        try
+        {
+            checkSerialized(mailbox);
+            checkAbandoned(mailbox);
+        }
+        finally
+        {
+            mailbox.close();
+        }
+    }
+
+    /** Checks that concurrent posts all run, one at a time, on one thread,
+        and are counted in batches. */
+    private void checkSerialized(Mailbox mailbox) throws TestFailed
+    {
+        final int[]             counter = new int[1];
+        final List<Thread>      actors = new ArrayList<>();
+        List<Thread>            posters = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+        {
+            posters.add(new Thread(() -> {
+                for(int j = 0; j < 1000; j++)
+                {
+                    try
+                    {
+                        mailbox.call(() -> {
+                            // Unsynchronized on purpose: the mailbox runs
+                            // one call at a time.
+                            counter[0]++;
+                            if(actors.isEmpty())
+                                actors.add(Thread.currentThread());
+                            else if(actors.get(0) != Thread.currentThread())
+                                actors.add(Thread.currentThread());
+                            return null;
+                        });
+                    }
+                    catch(ReflectiveOperationException | IOException e)
+                    {
+                        return;
+                    }
+                }
+            }));
+        }
+        for(Thread poster : posters)
+            poster.start();
+        join(posters);
+
+        if(counter[0] != 8000)
+            throw new TestFailed("lost updates in mailbox: " + counter[0]);
+        if(actors.size() != 1)
+            throw new TestFailed("calls ran on several threads");
+        if(mailbox.processed() != 8000 || mailbox.depth() != 0)
+            throw new TestFailed("mailbox counts wrong: processed " +
+                                 mailbox.processed() + ", depth " +
+                                 mailbox.depth());
+        if(mailbox.batches() == 0 || mailbox.batches() > 8000 ||
+           mailbox.meanBatchSize() < 1)
+        {
+            throw new TestFailed("batches not counted");
+        }
+    }
+
+    /** Checks that a call abandoned before it starts is skipped. */
+    private void checkAbandoned(Mailbox mailbox) throws TestFailed
+    {
+        CountDownLatch          blocking = new CountDownLatch(1);
+        CountDownLatch          release = new CountDownLatch(1);
+        Thread                  blocker = new Thread(() -> {
+            try
+            {
+                mailbox.call(() -> {
+                    blocking.countDown();
+                    try
+                    {
+                        release.await();
+                    }
+                    catch(InterruptedException e) { }
+                    return null;
+                });
+            }
+            catch(ReflectiveOperationException | IOException e) { }
+        });
+        blocker.start();
+        try
+        {
+            blocking.await();
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while blocking mailbox", e);
+        }
+
+        final boolean[]         ran = new boolean[1];
+        final boolean[]         abandoned = new boolean[1];
+        Thread                  waiter = new Thread(() -> {
+            try
+            {
+                mailbox.call(() -> {
+                    ran[0] = true;
+                    return null;
+                });
+            }
+            catch(IOException e)
+            {
+                abandoned[0] = true;
+            }
+            catch(ReflectiveOperationException e) { }
+        });
+        waiter.start();
+        while(mailbox.depth() < 1)
+            Thread.yield();
+        waiter.interrupt();
+
+        List<Thread>            threads = new ArrayList<>();
+        threads.add(waiter);
+        join(threads);
+        release.countDown();
+        threads.add(blocker);
+        join(threads);
+
+        try
+        {
+            mailbox.call(() -> null);
+        }
+        catch(ReflectiveOperationException | IOException e)
+        {
+            throw new TestFailed("mailbox unusable after abandoned call", e);
+        }
+        if(!abandoned[0] || ran[0])
+            throw new TestFailed("abandoned call not skipped");
+    }
+
+    private void join(List<Thread> threads) throws TestFailed
+    {
+        for(Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while waiting for posts", e);
+            }
+        }
+    }
+}
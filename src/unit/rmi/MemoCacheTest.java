@@ -0,0 +1,62 @@
+package rmi;
+
+import test.*;
+
+import java.lang.reflect.Method;
+
+/** Tests memoization, invalidation and the byte budget of
+    <code>MemoCache</code>.
+ */
+public class MemoCacheTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking skeleton memoization cache";
+
+    private int                 invoked;
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        try
+        {
+            Method              length = String.class.getMethod("length");
+            Method              isEmpty = String.class.getMethod("isEmpty");
+            MemoCache           cache = new MemoCache(1 << 20);
+            byte[]              arguments = Marshal.encode(new Object[] {"a"});
+
+            invoked = 0;
+            call(cache, length, arguments);
+            call(cache, length, Marshal.encode(new Object[] {"a"}));
+            call(cache, isEmpty, arguments);
+            if(invoked != 2 || cache.hits() != 1)
+                throw new TestFailed("equal argument bytes were not memoized");
+
+            cache.invalidate("length");
+            call(cache, length, arguments);
+            call(cache, isEmpty, arguments);
+            if(invoked != 3)
+                throw new TestFailed("invalidation removed the wrong results");
+
+            cache.setMaxBytes(0);
+            if(cache.size() != 0)
+                throw new TestFailed("cache exceeded its byte budget");
+            call(cache, length, arguments);
+            if(invoked != 4)
+                throw new TestFailed("result cached despite the byte budget");
+        }
+        catch(TestFailed e)
+        {
+            throw e;
+        }
+        catch(Throwable t)
+        {
+            throw new TestFailed("unexpected exception", t);
+        }
+    }
+
+    private Object call(MemoCache cache, Method method, byte[] arguments)
+        throws Throwable
+    {
+        return cache.call(new ArgumentKey(method, arguments), () -> ++invoked);
+    }
+}
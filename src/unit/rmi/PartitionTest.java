@@ -0,0 +1,274 @@
+package rmi;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import test.*;
+
+/** Tests the mapping of <code>@PartitionKey</code> arguments onto partition
+    threads, and that a skeleton runs calls with equal keys one at a time on
+    one thread while calls with different keys run in parallel. */
+public class PartitionTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking partitioning by key";
+
+    private static final int    PARTITIONS = 4;
+
+    /** Remote interface with a partitioned method. */
+    public interface Accounts
+    {
+        /** Adds to an account. A negative amount makes the call wait until
+            a call for <code>Server.other</code> runs. */
+        void deposit(@PartitionKey String account, int amount)
+            throws RMIException;
+    }
+
+    /** Server recording the threads and concurrency of calls per key. */
+    private static class Server implements Accounts
+    {
+        final String            other;
+        final ConcurrentHashMap<String, AtomicInteger>  running =
+            new ConcurrentHashMap<>();
+        final Set<Thread>       threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger     overlaps = new AtomicInteger();
+        final AtomicInteger     total = new AtomicInteger();
+        final CountDownLatch    entered = new CountDownLatch(1);
+        final CountDownLatch    release = new CountDownLatch(1);
+        volatile boolean        parallel = false;
+
+        Server(String other)
+        {
+            this.other = other;
+        }
+
+        @Override
+        public void deposit(String account, int amount)
+        {
+            AtomicInteger       count =
+                running.computeIfAbsent(account, a -> new AtomicInteger());
+            if(count.incrementAndGet() > 1)
+                overlaps.incrementAndGet();
+            try
+            {
+                if(amount < 0)
+                {
+                    entered.countDown();
+                    parallel = release.await(5, TimeUnit.SECONDS);
+                    return;
+                }
+                if(account.equals(other))
+                {
+                    release.countDown();
+                    return;
+                }
+                threads.add(Thread.currentThread());
+                // Widen the window in which overlapping calls would show.
+                Thread.sleep(2);
+                total.addAndGet(amount);
+            }
+            catch(InterruptedException e)
+            {
+            }
+            finally
+            {
+                count.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        checkHashing();
+        checkSkeleton();
+    }
+
+    /** Checks that keys are spread over the partitions, and that equal keys
+        share one. */
+    private void checkHashing() throws TestFailed
+    {
+        int                     partitions = 8;
+        int[]                   counts = new int[partitions];
+        for(int i = 0; i < 8000; i++)
+        {
+            int                 partition =
+                SkeletonService.partitionOf("key-" + i, partitions);
+            if(partition < 0 || partition >= partitions)
+                throw new TestFailed("partition out of range: " + partition);
+            if(partition != SkeletonService.partitionOf("key-" + i, partitions))
+                throw new TestFailed("equal keys in different partitions");
+            counts[partition]++;
+        }
+        for(int count : counts)
+        {
+            if(count < 500 || count > 1500)
+                throw new TestFailed("keys poorly spread over partitions");
+        }
+
+        if(SkeletonService.partitionOf(new int[] {1, 2}, partitions) !=
+           SkeletonService.partitionOf(new int[] {1, 2}, partitions))
+        {
+            throw new TestFailed("array keys not partitioned by content");
+        }
+        if(SkeletonService.partitionOf(null, partitions) !=
+           SkeletonService.partitionOf(null, partitions))
+        {
+            throw new TestFailed("null keys in different partitions");
+        }
+        if(SkeletonService.partitionOf(new IdentityKey(7), partitions) !=
+           SkeletonService.partitionOf(new IdentityKey(7), partitions))
+        {
+            throw new TestFailed("keys without hashCode partitioned by " +
+                                 "identity");
+        }
+    }
+
+    /** Checks, through a skeleton, that concurrent calls with one key never
+        overlap and run on one thread, and that a call with another key runs
+        while a call with the first is still running. */
+    private void checkSkeleton() throws TestFailed
+    {
+        String                  other = "b";
+        for(int i = 0;
+            SkeletonService.partitionOf(other, PARTITIONS) ==
+            SkeletonService.partitionOf("a", PARTITIONS); i++)
+        {
+            other = "b" + i;
+        }
+
+        Server                  server = new Server(other);
+        Skeleton<Accounts>      skeleton =
+            new Skeleton<>(Accounts.class, server);
+        skeleton.setPartitions(PARTITIONS);
+        try
+        {
+            skeleton.start();
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("unable to start skeleton", e);
+        }
+
+        try
+        {
+            Accounts            stub = Stub.create(Accounts.class, skeleton);
+            List<Thread>        callers = new ArrayList<>();
+            List<Throwable>     failures = new ArrayList<>();
+            for(int i = 0; i < 4; i++)
+            {
+                callers.add(call(() -> {
+                    for(int j = 0; j < 5; j++)
+                        stub.deposit("a", 1);
+                }, failures));
+            }
+            join(callers);
+            if(!failures.isEmpty())
+                throw new TestFailed("call failed", failures.get(0));
+            if(server.total.get() != 20)
+                throw new TestFailed("calls lost: " + server.total.get());
+            if(server.overlaps.get() != 0)
+                throw new TestFailed("calls with equal keys overlapped");
+            if(server.threads.size() != 1)
+            {
+                throw new TestFailed("calls with equal keys ran on " +
+                                     server.threads.size() + " threads");
+            }
+
+            Thread              blocked = call(() -> stub.deposit("a", -1),
+                                               failures);
+            if(!server.entered.await(5, TimeUnit.SECONDS))
+                throw new TestFailed("blocking call did not start");
+            stub.deposit(other, 0);
+            join(List.of(blocked));
+            if(!failures.isEmpty())
+                throw new TestFailed("call failed", failures.get(0));
+            if(!server.parallel)
+            {
+                throw new TestFailed("call with another key waited for a " +
+                                     "running call");
+            }
+        }
+        catch(TestFailed e)
+        {
+            throw e;
+        }
+        catch(Throwable t)
+        {
+            throw new TestFailed("unexpected exception", t);
+        }
+        finally
+        {
+            skeleton.stop();
+        }
+    }
+
+    /** Key with content equality but without <code>hashCode</code>. */
+    // hashCode is left out on purpose: equal keys must land in the same
+    // partition although their identity hash codes differ.
+    @SuppressWarnings("overrides")
+    private static class IdentityKey implements Serializable
+    {
+        private static final long   serialVersionUID = 1L;
+
+        final int               id;
+
+        IdentityKey(int id)
+        {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof IdentityKey &&
+                   ((IdentityKey)other).id == id;
+        }
+    }
+
+    /** Body of a calling thread. */
+    private interface Calls
+    {
+        void run() throws Throwable;
+    }
+
+    private Thread call(Calls calls, List<Throwable> failures)
+    {
+        Thread                  thread = new Thread(() -> {
+            try
+            {
+                calls.run();
+            }
+            catch(Throwable t)
+            {
+                synchronized(failures)
+                {
+                    failures.add(t);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void join(List<Thread> threads) throws TestFailed
+    {
+        for(Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while waiting for calls", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package rmi;
+
+import test.*;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests the lookup cache and re-resolution of <code>RegistryClient</code>.
+
+    <p>
+    The test exports a registry whose <code>lookup</code> calls are counted.
+    It checks that cache hits do not reach the registry, and that a stub bound
+    to a name whose cached address refuses connections resolves the name again
+    and completes the call on the new address.
+ */
+public class RegistryClientTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking registry lookup cache";
+
+    private Skeleton<Registry>  skeleton;
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Override
+    protected void initialize() throws TestFailed
+    {
+        skeleton = new Skeleton<Registry>(Registry.class, new RegistryServer()
+        {
+            @Override
+            public InetSocketAddress lookup(String name) throws RMIException
+            {
+                lookups.incrementAndGet();
+                return super.lookup(name);
+            }
+        });
+
+        try
+        {
+            skeleton.start();
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("unable to start registry", e);
+        }
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        Registry                registry;
+        InetSocketAddress       registryAddress;
+        InetSocketAddress       deadAddress;
+
+        try
+        {
+            registry = Stub.create(Registry.class, skeleton);
+            registryAddress = new InetSocketAddress(skeleton.getAddress(),
+                                                    skeleton.getPort());
+            deadAddress = unusedAddress();
+        }
+        catch(Throwable t)
+        {
+            throw new TestFailed("unable to create registry stub", t);
+        }
+
+        RegistryClient          client = new RegistryClient(registry, 60000);
+
+        try
+        {
+            registry.bind("registry", deadAddress);
+
+            if(!client.resolve("registry").equals(deadAddress))
+                throw new TestFailed("resolve returned wrong address");
+            client.resolve("registry");
+            if(lookups.get() != 1)
+                throw new TestFailed("cache hit contacted the registry");
+
+            registry.rebind("registry", registryAddress);
+
+            Registry            named = client.create(Registry.class, "registry");
+            if(named.list().length != 1)
+                throw new TestFailed("named stub returned wrong result");
+            if(lookups.get() != 2)
+                throw new TestFailed("refused connection did not re-resolve");
+            if(!client.resolve("registry").equals(registryAddress))
+                throw new TestFailed("cache not updated after re-resolving");
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("unexpected exception", e);
+        }
+    }
+
+    @Override
+    protected void clean()
+    {
+        if(skeleton != null)
+        {
+            skeleton.stop();
+            skeleton = null;
+        }
+    }
+
+    private InetSocketAddress unusedAddress() throws Exception
+    {
+        try(ServerSocket socket = new ServerSocket(0))
+        {
+            return new InetSocketAddress(skeleton.getAddress(),
+                                         socket.getLocalPort());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import test.*;
+
+/** Tests the routing of calls by <code>ReplicatedInvocationHandler</code>:
+    reads to replicas, writes to the primary, and reads pinned to the primary
+    during the read-your-writes session window. Calls go to fake endpoints
+    which record the address each call was sent to. */
+public class ReplicatedRoutingTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking replicated stub routing";
+
+    private static final InetSocketAddress  PRIMARY =
+        new InetSocketAddress("127.0.0.1", 7000);
+    private static final List<InetSocketAddress>    REPLICAS =
+        List.of(new InetSocketAddress("127.0.0.1", 7001),
+                new InetSocketAddress("127.0.0.1", 7002));
+
+    private interface Store
+    {
+        @ReadOnly
+        String get(String key) throws RMIException;
+        void put(String key, String value) throws RMIException;
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        Method                  get;
+        Method                  put;
+        try
+        {
+            get = Store.class.getMethod("get", String.class);
+            put = Store.class.getMethod("put", String.class, String.class);
+        }
+        catch(NoSuchMethodException e)
+        {
+            throw new TestFailed("unable to find test methods", e);
+        }
+
+        checkRouting(get, put);
+        checkSession(get, put);
+        checkFallback(get);
+    }
+
+    /** Checks that reads go to the replicas and writes to the primary, and
+        that without a session window reads after a write still go to the
+        replicas. */
+    private void checkRouting(Method get, Method put) throws TestFailed
+    {
+        FakeHandler             handler = new FakeHandler(0);
+
+        for(int i = 0; i < 10; i++)
+        {
+            InetSocketAddress   target = handler.route(get, "k");
+            if(!REPLICAS.contains(target))
+                throw new TestFailed("read sent to " + target);
+        }
+        if(!PRIMARY.equals(handler.route(put, "k", "v")))
+            throw new TestFailed("write not sent to primary");
+        if(!REPLICAS.contains(handler.route(get, "k")))
+            throw new TestFailed("read pinned to primary without session");
+    }
+
+    /** Checks that reads after a write go to the primary within the session
+        window, and to the replicas again after it. */
+    private void checkSession(Method get, Method put) throws TestFailed
+    {
+        FakeHandler             handler = new FakeHandler(200);
+
+        if(!REPLICAS.contains(handler.route(get, "k")))
+            throw new TestFailed("read before any write not sent to replica");
+        handler.route(put, "k", "v");
+        if(!PRIMARY.equals(handler.route(get, "k")))
+            throw new TestFailed("read after write not sent to primary");
+
+        try
+        {
+            Thread.sleep(300);
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while waiting for session", e);
+        }
+        if(!REPLICAS.contains(handler.route(get, "k")))
+            throw new TestFailed("read pinned to primary after session");
+    }
+
+    /** Checks that a read is sent to the primary when no replica accepts the
+        connection. */
+    private void checkFallback(Method get) throws TestFailed
+    {
+        FakeHandler             handler = new FakeHandler(0);
+        handler.refused.addAll(REPLICAS);
+
+        if(!PRIMARY.equals(handler.route(get, "k")))
+            throw new TestFailed("read not sent to primary when replicas " +
+                                 "refuse connections");
+    }
+
+    /** Handler whose calls are answered locally, recording the addresses
+        they were sent to. */
+    private static class FakeHandler
+        extends ReplicatedInvocationHandler<Store>
+    {
+        final List<InetSocketAddress>   sent = new ArrayList<>();
+        final List<InetSocketAddress>   refused = new ArrayList<>();
+
+        FakeHandler(long sessionMillis)
+        {
+            super(Store.class, PRIMARY, new LoadBalancer(REPLICAS),
+                  new HedgePolicy(HedgePolicy.DEFAULT_PERCENT), sessionMillis);
+        }
+
+        @Override
+        synchronized Return exchange(InetSocketAddress address, Method m,
+                                     Object[] args, PendingCall pending)
+            throws RMIException
+        {
+            if(refused.contains(address))
+            {
+                throw new RMIException("connection refused",
+                                       new ConnectException());
+            }
+            sent.add(address);
+            return new Return(m.getReturnType(), null, null, null);
+        }
+
+        /** Makes a call and returns the address that answered it. */
+        InetSocketAddress route(Method m, Object... args) throws TestFailed
+        {
+            try
+            {
+                call(m, args);
+            }
+            catch(Throwable t)
+            {
+                throw new TestFailed("call failed", t);
+            }
+            return sent.get(sent.size() - 1);
+        }
+    }
+}
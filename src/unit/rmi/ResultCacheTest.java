@@ -0,0 +1,69 @@
+package rmi;
+
+import test.*;
+
+import java.lang.reflect.Method;
+
+/** Tests hits, expiry, eviction and exception handling in
+    <code>ResultCache</code>.
+ */
+public class ResultCacheTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking client-side result cache";
+
+    private int                 performed;
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        try
+        {
+            Method              method = String.class.getMethod("valueOf",
+                                                                Object.class);
+            ResultCache         cache = new ResultCache(1 << 20);
+
+            performed = 0;
+            call(cache, method, "a", 60000);
+            call(cache, method, new String("a"), 60000);
+            if(performed != 1 || cache.hits() != 1 || cache.misses() != 1)
+                throw new TestFailed("equal arguments did not hit the cache");
+
+            call(cache, method, "b", 0);
+            call(cache, method, "b", 0);
+            if(performed != 3)
+                throw new TestFailed("expired result was returned");
+
+            try
+            {
+                cache.call(new CallKey(method, new Object[] {"c"}), 60000,
+                           () -> { performed++; throw new RMIException("c"); });
+            }
+            catch(RMIException e) { }
+            call(cache, method, "c", 60000);
+            if(performed != 5)
+                throw new TestFailed("exception was cached");
+
+            ResultCache         small = new ResultCache(16 * 400);
+            for(int i = 0; i < 100; i++)
+                call(small, method, i, 60000);
+            if(small.evictions() == 0 || small.size() > 16 * 400)
+                throw new TestFailed("cache exceeded its byte budget");
+        }
+        catch(TestFailed e)
+        {
+            throw e;
+        }
+        catch(Throwable t)
+        {
+            throw new TestFailed("unexpected exception", t);
+        }
+    }
+
+    private Object call(ResultCache cache, Method method, Object argument,
+                        long ttl) throws Throwable
+    {
+        return cache.call(new CallKey(method, new Object[] {argument}), ttl,
+                          () -> { performed++; return "x" + argument; });
+    }
+}
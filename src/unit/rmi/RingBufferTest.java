@@ -0,0 +1,201 @@
+package rmi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import test.*;
+
+/** Tests ordering, batched claims, concurrent use and closing of the
+    lock-free <code>RingBuffer</code>. */
+public class RingBufferTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking ring buffer handoff";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        checkOrder();
+        checkBatches();
+        checkConcurrent(WaitStrategy.PARK, 3, 20000);
+        checkConcurrent(WaitStrategy.YIELD, 3, 20000);
+        // Spinning consumers hold on to their processors, so keep the run
+        // short on machines with few of them.
+        checkConcurrent(WaitStrategy.BUSY_SPIN, 1, 2000);
+        checkClose();
+    }
+
+    /** Checks that items come out in the order they went in, and that a full
+        buffer refuses items. */
+    private void checkOrder() throws TestFailed
+    {
+        RingBuffer<Integer>     buffer = new RingBuffer<>(4, WaitStrategy.PARK);
+
+        // Several laps, so that slots are reused.
+        for(int lap = 0; lap < 3; lap++)
+        {
+            for(int i = 0; i < 4; i++)
+            {
+                if(!buffer.offer(i))
+                    throw new TestFailed("buffer refused item before full");
+            }
+            if(buffer.offer(4) || buffer.size() != 4)
+                throw new TestFailed("full buffer accepted item");
+            for(int i = 0; i < 4; i++)
+            {
+                Integer         item = buffer.poll();
+                if(item == null || item != i)
+                    throw new TestFailed("items out of order: " + item);
+            }
+            if(buffer.poll() != null || buffer.size() != 0)
+                throw new TestFailed("empty buffer returned item");
+        }
+
+        try
+        {
+            new RingBuffer<Integer>(6, WaitStrategy.PARK);
+            throw new TestFailed("capacity not a power of two accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+        }
+    }
+
+    /** Checks that batched claims are all or nothing, and that draining takes
+        items in order. */
+    private void checkBatches() throws TestFailed
+    {
+        RingBuffer<Integer>     buffer = new RingBuffer<>(8, WaitStrategy.PARK);
+        Integer[]               batch = {0, 1, 2, 3, 4};
+        Integer[]               into = new Integer[8];
+
+        if(buffer.offer(batch, 5) != 5)
+            throw new TestFailed("batch not claimed");
+        if(buffer.offer(batch, 5) != 3 || buffer.size() != 8)
+            throw new TestFailed("batch not claimed up to capacity");
+        if(buffer.offer(batch, 5) != 0)
+            throw new TestFailed("batch claimed in full buffer");
+
+        if(buffer.drain(into, 6) != 6)
+            throw new TestFailed("drain took wrong number of items");
+        for(int i = 0; i < 6; i++)
+        {
+            if(into[i] != (i < 5 ? i : i - 5))
+                throw new TestFailed("drained items out of order");
+        }
+        if(buffer.drain(into, 8) != 2 || buffer.size() != 0)
+            throw new TestFailed("drain left items behind");
+    }
+
+    /** Checks that items offered by several producers, singly and in
+        batches, each reach exactly one of several consumers. */
+    private void checkConcurrent(WaitStrategy strategy, int consumers,
+                                 int perProducer) throws TestFailed
+    {
+        final int               producers = 4;
+        RingBuffer<Long>        buffer = new RingBuffer<>(64, strategy);
+        AtomicLong              sum = new AtomicLong();
+        AtomicLong              count = new AtomicLong();
+        List<Thread>            senders = new ArrayList<>();
+        List<Thread>            receivers = new ArrayList<>();
+
+        for(int p = 0; p < producers; p++)
+        {
+            final long          base = (long)p * perProducer;
+            senders.add(new Thread(() -> {
+                Long[]          batch = new Long[4];
+                for(int i = 0; i < perProducer; i += batch.length)
+                {
+                    for(int j = 0; j < batch.length; j++)
+                        batch[j] = base + i + j;
+                    // Alternate batched and single offers, publishing
+                    // singly what a batch could not claim.
+                    int         published = i % 8 == 0
+                        ? buffer.offer(batch, batch.length) : 0;
+                    for(int j = published; j < batch.length; j++)
+                    {
+                        while(!buffer.offer(batch[j]))
+                            Thread.yield();
+                    }
+                }
+            }));
+        }
+        for(int c = 0; c < consumers; c++)
+        {
+            receivers.add(new Thread(() -> {
+                try
+                {
+                    Long        item;
+                    while((item = buffer.take()) != null)
+                    {
+                        sum.addAndGet(item);
+                        count.incrementAndGet();
+                    }
+                }
+                catch(InterruptedException e)
+                {
+                }
+            }));
+        }
+        for(Thread thread : receivers)
+            thread.start();
+        for(Thread thread : senders)
+            thread.start();
+        join(senders);
+        buffer.close();
+        join(receivers);
+
+        long                    total = (long)producers * perProducer;
+        if(count.get() != total || sum.get() != total * (total - 1) / 2)
+        {
+            throw new TestFailed("items lost or duplicated with " + strategy +
+                                 ": " + count.get() + " of " + total);
+        }
+    }
+
+    /** Checks that closing wakes a waiting consumer only once the items left
+        are taken, and that a closed buffer refuses items. */
+    private void checkClose() throws TestFailed
+    {
+        RingBuffer<Integer>     buffer = new RingBuffer<>(4, WaitStrategy.PARK);
+        List<Integer>           taken = new ArrayList<>();
+        Thread                  consumer = new Thread(() -> {
+            try
+            {
+                Integer         item;
+                while((item = buffer.take()) != null)
+                    taken.add(item);
+            }
+            catch(InterruptedException e)
+            {
+            }
+        });
+        consumer.start();
+        buffer.offer(1);
+        buffer.offer(2);
+        buffer.close();
+        join(List.of(consumer));
+
+        if(!taken.equals(List.of(1, 2)))
+            throw new TestFailed("items left at close not taken: " + taken);
+        if(buffer.offer(3))
+            throw new TestFailed("closed buffer accepted item");
+    }
+
+    private void join(List<Thread> threads) throws TestFailed
+    {
+        for(Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch(InterruptedException e)
+            {
+                throw new TestFailed("interrupted while waiting for threads",
+                                     e);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package rmi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.locks.Lock;
+
+import test.*;
+
+/** Tests the resolution of concurrency modes by <code>ServerLock</code>. */
+public class ServerLockTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking server concurrency modes";
+
+    /** Remote interface declaring some modes. */
+    private interface Account
+    {
+        @ReadOnly
+        int balance() throws RMIException;
+        void deposit(int amount) throws RMIException;
+        void audit() throws RMIException;
+        @Unsynchronized
+        String name() throws RMIException;
+    }
+
+    /** Non-thread-safe implementation, exclusive by default. */
+    @Exclusive
+    private static class UnsafeAccount implements Account
+    {
+        int                     balance;
+
+        public int balance() { return balance; }
+        public void deposit(int amount) { balance += amount; }
+        @Unsynchronized
+        public void audit() { }
+        public String name() { return "unsafe"; }
+    }
+
+    /** Implementation without a default mode. */
+    private static class SafeAccount implements Account
+    {
+        public synchronized int balance() { return 0; }
+        public synchronized void deposit(int amount) { }
+        @Exclusive
+        public void audit() { }
+        public String name() { return "safe"; }
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        ServerLock              unsafeLock = new ServerLock();
+        Object                  unsafe = new UnsafeAccount();
+        Lock                    read = unsafeLock.lockFor(method("balance"), unsafe);
+        Lock                    write = unsafeLock.lockFor(method("deposit"), unsafe);
+        if(read == null || write == null || read == write)
+            throw new TestFailed("read-only and default exclusive methods " +
+                                 "not given distinct locks");
+        if(unsafeLock.lockFor(method("audit"), unsafe) != null)
+            throw new TestFailed("implementation method mode ignored");
+        if(unsafeLock.lockFor(method("name"), unsafe) != null)
+            throw new TestFailed("interface method mode ignored");
+
+        if(!write.tryLock())
+            throw new TestFailed("exclusive lock not available");
+        boolean[]               readAcquired = new boolean[1];
+        Thread                  reader = new Thread(() -> {
+            readAcquired[0] = read.tryLock();
+            if(readAcquired[0])
+                read.unlock();
+        });
+        reader.start();
+        try
+        {
+            reader.join();
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while waiting for reader", e);
+        }
+        finally
+        {
+            write.unlock();
+        }
+        if(readAcquired[0])
+            throw new TestFailed("read-only method runs beside exclusive one");
+
+        ServerLock              safeLock = new ServerLock();
+        Object                  safe = new SafeAccount();
+        if(safeLock.lockFor(method("deposit"), safe) != null)
+            throw new TestFailed("unmarked method locked without a default");
+        if(safeLock.lockFor(method("audit"), safe) == null)
+            throw new TestFailed("exclusive implementation method not locked");
+    }
+
+    private static Method method(String name) throws TestFailed
+    {
+        for(Method method : Account.class.getMethods())
+        {
+            if(method.getName().equals(name))
+                return method;
+        }
+        throw new TestFailed("no method " + name);
+    }
+}
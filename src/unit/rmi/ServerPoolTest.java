@@ -0,0 +1,116 @@
+package rmi;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import test.*;
+
+/** Tests leasing, reuse and pinning of server objects in
+    <code>ServerPool</code>, and pinning on the workers of a pooled
+    skeleton. */
+public class ServerPoolTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking server object pool";
+
+    /** Remote interface of the pooled server objects. */
+    public interface Numbered
+    {
+        /** Returns the number of the instance called. */
+        int number() throws RMIException;
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        AtomicInteger           serial = new AtomicInteger();
+        ServerPool<Integer>     pool =
+            new ServerPool<>(() -> serial.incrementAndGet());
+
+        if(pool.created() != 1 || pool.idle() != 1)
+            throw new TestFailed("first instance not created eagerly");
+
+        Integer                 first = pool.lease();
+        Integer                 second = pool.lease();
+        if(first.equals(second))
+            throw new TestFailed("instance leased twice at once");
+        if(pool.leased() != 2 || pool.created() != 2)
+            throw new TestFailed("leases not counted");
+
+        pool.release(first);
+        pool.release(second);
+        if(!pool.lease().equals(second))
+            throw new TestFailed("most recently returned instance not reused");
+        pool.release(second);
+
+        pool.setMaxIdle(1);
+        Integer                 a = pool.lease();
+        Integer                 b = pool.lease();
+        pool.release(a);
+        pool.release(b);
+        if(pool.idle() != 1 || pool.leased() != 0)
+            throw new TestFailed("idle instances not bounded");
+
+        if(pool.pinned() != null)
+            throw new TestFailed("instance pinned while pinning is off");
+        pool.setPinned(true);
+        Integer                 pinned = pool.pinned();
+        if(pinned == null || !pinned.equals(pool.pinned()))
+            throw new TestFailed("thread does not keep its pinned instance");
+
+        final Integer[]         other = new Integer[1];
+        Thread                  thread = new Thread(() -> other[0] = pool.pinned());
+        thread.start();
+        try
+        {
+            thread.join();
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted while pinning", e);
+        }
+        if(other[0] == null || other[0].equals(pinned))
+            throw new TestFailed("threads share a pinned instance");
+
+        checkWorkerPinning();
+    }
+
+    /** Checks that calls run by the worker of a pooled skeleton use the
+        instance pinned to the worker rather than leasing one. */
+    private void checkWorkerPinning() throws TestFailed
+    {
+        AtomicInteger           serial = new AtomicInteger();
+        Skeleton<Numbered>      skeleton = Skeleton.pooled(Numbered.class, () -> {
+            int                 number = serial.incrementAndGet();
+            return () -> number;
+        });
+        skeleton.setWorkers(1, WaitStrategy.PARK);
+        skeleton.getExecutionPolicy().setEnabled(false);
+        skeleton.getServerPool().setPinned(true);
+
+        Set<Integer>            numbers = new HashSet<>();
+        try
+        {
+            skeleton.start();
+            Numbered            stub = Stub.create(Numbered.class, skeleton);
+            for(int i = 0; i < 10; i++)
+                numbers.add(stub.number());
+        }
+        catch(Throwable t)
+        {
+            throw new TestFailed("unable to call pooled skeleton", t);
+        }
+        finally
+        {
+            skeleton.stop();
+        }
+
+        // The first instance is created with the pool, and is leased by
+        // calls which found the worker busy. The worker pins a second one.
+        if(skeleton.getServerPool().created() != 2 || !numbers.contains(2))
+            throw new TestFailed("worker did not pin an instance");
+        if(!Set.of(1, 2).containsAll(numbers))
+            throw new TestFailed("unexpected instances called: " + numbers);
+    }
+}
@@ -0,0 +1,141 @@
+package rmi;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import test.*;
+
+/** Tests calls made through sharded stubs: each call reaches the skeleton
+    owning its key, and only calls actually sent count towards the hot keys
+    of that skeleton, whether or not they go through the result cache. */
+public class ShardedStubTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking sharded stub routing";
+
+    private static final int    SHARDS = 3;
+    private static final int    KEYS = 24;
+
+    /** Remote interface whose calls are routed by key. */
+    public interface Shard
+    {
+        /** Returns the name of the server answering for the key. */
+        String owner(@ShardKey String key) throws RMIException;
+        /** Returns the name of the server answering for the key, allowing
+            the result to be cached. */
+        @Cacheable(ttl = 60000)
+        String cachedOwner(@ShardKey String key) throws RMIException;
+    }
+
+    private static class Server implements Shard
+    {
+        private final String    name;
+
+        Server(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String owner(String key)
+        {
+            return name;
+        }
+
+        @Override
+        public String cachedOwner(String key)
+        {
+            return name;
+        }
+    }
+
+    private final List<Skeleton<Shard>> skeletons = new ArrayList<>();
+    private final Map<InetSocketAddress, String> names = new HashMap<>();
+
+    @Override
+    protected void initialize() throws TestFailed
+    {
+        try
+        {
+            for(int i = 0; i < SHARDS; i++)
+            {
+                Skeleton<Shard> skeleton =
+                    new Skeleton<>(Shard.class, new Server("shard" + i));
+                skeletons.add(skeleton);
+                skeleton.start();
+                names.put(new InetSocketAddress(skeleton.getAddress(),
+                                                skeleton.getPort()),
+                          "shard" + i);
+            }
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("unable to start skeletons", e);
+        }
+    }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        HashRing                ring = new HashRing(names.keySet());
+        Shard                   stub = Stub.createSharded(Shard.class, ring);
+
+        try
+        {
+            for(int i = 0; i < KEYS; i++)
+            {
+                String          key = "key" + i;
+                String          expected = names.get(ring.locate(key));
+                if(!expected.equals(stub.owner(key)))
+                    throw new TestFailed("call for " + key + " sent to the " +
+                                         "wrong shard");
+            }
+
+            InetSocketAddress   hot = ring.locate("hot");
+            for(int i = 0; i < 5; i++)
+                stub.owner("hot");
+            // The first call is sent and cached; the others are answered by
+            // the cache and never reach the shard.
+            for(int i = 0; i < 5; i++)
+            {
+                if(!names.get(hot).equals(stub.cachedOwner("hot")))
+                    throw new TestFailed("cached call sent to the wrong shard");
+            }
+
+            Long                count = ring.hotKeys(hot, 1).get("hot");
+            if(count == null || count != 6)
+                throw new TestFailed("hot key counted " + count + " times " +
+                                     "for 6 calls sent");
+            for(InetSocketAddress address : names.keySet())
+            {
+                for(Map.Entry<Object, Long> entry :
+                        ring.hotKeys(address, KEYS).entrySet())
+                {
+                    if(!address.equals(ring.locate(entry.getKey())))
+                        throw new TestFailed("key counted on the wrong shard");
+                    if(!entry.getKey().equals("hot") && entry.getValue() != 1)
+                    {
+                        throw new TestFailed("key counted " +
+                                             entry.getValue() +
+                                             " times for one call");
+                    }
+                }
+            }
+        }
+        catch(RMIException e)
+        {
+            throw new TestFailed("unexpected exception", e);
+        }
+    }
+
+    @Override
+    protected void clean()
+    {
+        for(Skeleton<Shard> skeleton : skeletons)
+            skeleton.stop();
+        skeletons.clear();
+    }
+}
@@ -0,0 +1,106 @@
+package rmi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import test.*;
+
+/** Tests the spin times given by <code>@SpinWait</code> and bounded spinning
+    in <code>Spinner</code>. */
+public class SpinnerTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking spin waits";
+
+    @SpinWait(micros = 20)
+    private interface Spinning
+    {
+        void inherited() throws RMIException;
+        @SpinWait(micros = 5)
+        void own() throws RMIException;
+    }
+
+    private interface Plain
+    {
+        void plain() throws RMIException;
+    }
+
+    private interface Base
+    {
+        void shared() throws RMIException;
+    }
+
+    @SpinWait(micros = 30)
+    private interface SpinningDerived extends Base { }
+
+    private interface PlainDerived extends Base { }
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        Method                  inherited;
+        Method                  own;
+        Method                  plain;
+        Method                  shared;
+        try
+        {
+            inherited = Spinning.class.getMethod("inherited");
+            own = Spinning.class.getMethod("own");
+            plain = Plain.class.getMethod("plain");
+            shared = Base.class.getMethod("shared");
+        }
+        catch(NoSuchMethodException e)
+        {
+            throw new TestFailed("unable to find test methods", e);
+        }
+
+        if(Spinner.budgetNanos(Spinning.class, inherited) != 20000 ||
+           Spinner.budgetNanos(Spinning.class) != 20000)
+        {
+            throw new TestFailed("spin time of interface not applied");
+        }
+        if(Spinner.budgetNanos(Spinning.class, own) != 5000)
+            throw new TestFailed("spin time of method not applied");
+        if(Spinner.budgetNanos(Plain.class, plain) != 0 ||
+           Spinner.budgetNanos(Plain.class) != 0)
+        {
+            throw new TestFailed("spinning without annotation");
+        }
+
+        // The same inherited method spins according to the interface it is
+        // called through, whichever is looked up first.
+        if(Spinner.budgetNanos(SpinningDerived.class, shared) != 30000 ||
+           Spinner.budgetNanos(PlainDerived.class, shared) != 0 ||
+           Spinner.budgetNanos(SpinningDerived.class, shared) != 30000)
+        {
+            throw new TestFailed("spin time of inherited method depends on " +
+                                 "lookup order");
+        }
+
+        try
+        {
+            if(!Spinner.await(new ByteArrayInputStream(new byte[1]),
+                              TimeUnit.MILLISECONDS.toNanos(100)))
+            {
+                throw new TestFailed("spin missed available bytes");
+            }
+
+            InputStream         empty = new ByteArrayInputStream(new byte[0]);
+            long                start = System.nanoTime();
+            if(Spinner.await(empty, TimeUnit.MILLISECONDS.toNanos(2)))
+                throw new TestFailed("spin found bytes in empty stream");
+            long                elapsed = System.nanoTime() - start;
+            if(elapsed < TimeUnit.MILLISECONDS.toNanos(2))
+                throw new TestFailed("spin stopped early");
+            if(elapsed > TimeUnit.SECONDS.toNanos(1))
+                throw new TestFailed("spin not bounded");
+        }
+        catch(IOException e)
+        {
+            throw new TestFailed("unable to check stream", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package rmi;
+
+import test.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Tests expiry and cancellation in <code>TimingWheel</code>.
+
+    <p>
+    The wheel under test has only eight buckets, so that the longer delays
+    span several turns of the wheel.
+ */
+public class TimingWheelTest extends Test
+{
+    /** Test notice. */
+    public static final String  notice = "checking hashed timing wheel";
+
+    @Override
+    protected void perform() throws TestFailed
+    {
+        TimingWheel             wheel = new TimingWheel(
+            TimeUnit.MILLISECONDS.toNanos(1), 8, "test-timing-wheel");
+        long[]                  delays = {0, 3, 20, 45};
+        CountDownLatch          fired = new CountDownLatch(delays.length);
+        AtomicBoolean           early = new AtomicBoolean();
+        AtomicBoolean           cancelledRan = new AtomicBoolean();
+
+        for(long delay : delays)
+        {
+            long                due = System.nanoTime() +
+                                      TimeUnit.MILLISECONDS.toNanos(delay);
+            wheel.schedule(() -> {
+                if(System.nanoTime() - due < 0)
+                    early.set(true);
+                fired.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        TimingWheel.Timeout     cancelled =
+            wheel.schedule(() -> cancelledRan.set(true), 30,
+                           TimeUnit.MILLISECONDS);
+        if(!cancelled.cancel())
+            throw new TestFailed("pending timeout could not be cancelled");
+
+        try
+        {
+            if(!fired.await(5, TimeUnit.SECONDS))
+                throw new TestFailed("scheduled tasks did not all run");
+            Thread.sleep(50);
+        }
+        catch(InterruptedException e)
+        {
+            throw new TestFailed("interrupted", e);
+        }
+
+        if(early.get())
+            throw new TestFailed("task ran before its delay elapsed");
+        if(cancelledRan.get())
+            throw new TestFailed("cancelled task ran");
+        if(wheel.pending() != 0)
+            throw new TestFailed("wheel still has pending timeouts");
+    }
+}